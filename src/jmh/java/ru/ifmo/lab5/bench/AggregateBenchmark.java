@@ -0,0 +1,109 @@
+package ru.ifmo.lab5.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.managers.ColumnarPersonStore;
+import ru.ifmo.lab5.managers.NumericField;
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.AggregateKernels;
+
+import java.math.BigInteger;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Агрегаты по числовым полям: поток по объектам (как были реализованы average_of_height и count_by_hair_color
+ * до накопленной статистики и индексов) против циклов {@link AggregateKernels} по массиву примитивов.
+ * Отдельно измеряется полный путь команды: копирование столбца из хранилища и вычисление над ним.
+ * Все вычисления последовательные; зависимость от числа потоков измеряет {@link ParallelScanBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregateBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private TreeSet<Person> persons;
+    private long[] heights;
+    private double[] coordinatesX;
+    private CollectionManager treeSetManager;
+    private CollectionManager columnarManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        persons = new PersonGenerator(42).collection(size);
+        treeSetManager = new CollectionManager();
+        treeSetManager.setCollection(new TreeSet<>(persons));
+        columnarManager = new CollectionManager(new ColumnarPersonStore());
+        columnarManager.setCollection(new TreeSet<>(persons));
+        heights = treeSetManager.longColumn(NumericField.HEIGHT);
+        coordinatesX = treeSetManager.doubleColumn(NumericField.COORDINATES_X);
+    }
+
+    @Benchmark
+    public double averageHeightStream() {
+        return persons.stream().mapToLong(Person::getHeight).average().orElse(0);
+    }
+
+    @Benchmark
+    public double averageHeightIncremental() {
+        return treeSetManager.getAverageHeight();
+    }
+
+    @Benchmark
+    public long sumHeightStream() {
+        return persons.stream().mapToLong(Person::getHeight).sum();
+    }
+
+    @Benchmark
+    public BigInteger sumHeightKernel() {
+        return AggregateKernels.sum(null, heights);
+    }
+
+    @Benchmark
+    public double sumCoordinatesXStream() {
+        return persons.stream().filter(person -> person.getCoordinates() != null)
+                .mapToDouble(person -> person.getCoordinates().getX()).sum();
+    }
+
+    @Benchmark
+    public double sumCoordinatesXKernel() {
+        return AggregateKernels.sum(null, coordinatesX);
+    }
+
+    @Benchmark
+    public double maxCoordinatesXKernel() {
+        return AggregateKernels.max(null, coordinatesX);
+    }
+
+    @Benchmark
+    public long[] histogramHeightKernel() {
+        return AggregateKernels.histogram(null, heights,
+                AggregateKernels.min(null, heights), AggregateKernels.max(null, heights), 10);
+    }
+
+    @Benchmark
+    public double sumCoordinatesXTreeSetColumn() {
+        return AggregateKernels.sum(null, treeSetManager.doubleColumn(NumericField.COORDINATES_X));
+    }
+
+    @Benchmark
+    public double sumCoordinatesXColumnarColumn() {
+        return AggregateKernels.sum(null, columnarManager.doubleColumn(NumericField.COORDINATES_X));
+    }
+
+    @Benchmark
+    public long countByHairColorStream() {
+        return persons.stream().filter(person -> person.getHairColor() == Color.RED).count();
+    }
+
+    @Benchmark
+    public long countByHairColorIndex() {
+        return treeSetManager.countByHairColor(Color.RED);
+    }
+}
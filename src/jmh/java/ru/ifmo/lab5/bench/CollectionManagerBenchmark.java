@@ -0,0 +1,94 @@
+package ru.ifmo.lab5.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость основных операций {@link CollectionManager} при разных размерах коллекции и распределениях цвета.
+ * Изменяющие операции возвращают коллекцию к исходному размеру, чтобы итерации измеряли одно и то же.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionManagerBenchmark {
+    /** Доля коллекции, удаляемая одним вызовом removeGreater. */
+    private static final int REMOVE_GREATER_PERCENT = 1;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public String colorDistribution;
+
+    private CollectionManager collectionManager;
+    private PersonGenerator generator;
+    private Person pivot;
+    private List<Person> removedTail;
+    private long cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new PersonGenerator(42, PersonGenerator.ColorDistribution.valueOf(colorDistribution));
+        collectionManager = new CollectionManager();
+        collectionManager.setCollection(generator.collection(size));
+        pivot = generator.next(size - size * REMOVE_GREATER_PERCENT / 100);
+        removedTail = new ArrayList<>(collectionManager.snapshot().tailSet(pivot, false));
+    }
+
+    /**
+     * Следующий существующий ID по кругу, чтобы операции не попадали всегда в один и тот же элемент.
+     */
+    private long nextId() {
+        cursor = (cursor + 7919) % size;
+        return 1 + cursor;
+    }
+
+    @Benchmark
+    public long addThenRemove() {
+        Person person = generator.next(0);
+        collectionManager.add(person);
+        collectionManager.removeById(person.getId());
+        return person.getId();
+    }
+
+    @Benchmark
+    public boolean update() {
+        return collectionManager.update(nextId(), generator.next(0));
+    }
+
+    @Benchmark
+    public boolean removeByIdThenRestore() {
+        Person person = collectionManager.findById(nextId()).orElseThrow();
+        boolean removed = collectionManager.removeById(person.getId());
+        collectionManager.addLoaded(person);
+        return removed;
+    }
+
+    @Benchmark
+    public int removeGreaterThenRestore() {
+        int removed = collectionManager.removeGreater(pivot);
+        for (Person person : removedTail) {
+            collectionManager.addLoaded(person);
+        }
+        return removed;
+    }
+
+    @Benchmark
+    public long countByHairColor() {
+        return collectionManager.countByHairColor(Color.values()[(int) (cursor++ % Color.values().length)]);
+    }
+
+    @Benchmark
+    public double getAverageHeight() {
+        return collectionManager.getAverageHeight();
+    }
+}
@@ -0,0 +1,80 @@
+package ru.ifmo.lab5.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.managers.NumericField;
+import ru.ifmo.lab5.managers.ParallelismManager;
+import ru.ifmo.lab5.managers.SkipListPersonStore;
+import ru.ifmo.lab5.managers.TreeSetPersonStore;
+import ru.ifmo.lab5.util.AggregateKernels;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование полных проходов по коллекции с числом потоков {@link ParallelismManager}:
+ * выписывание столбца из хранилища (деление сплитератором хранилища) и агрегаты над готовым столбцом.
+ * При параллелизме 1 пул не создается и все выполняется в потоке бенчмарка - это базовая линия.
+ * Значения параметра больше числа процессоров машины имеют смысл только как проверка накладных расходов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelScanBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"treeset", "skiplist"})
+    public String store;
+
+    private ParallelismManager parallelismManager;
+    private CollectionManager collectionManager;
+    private long[] heights;
+    private long minHeight;
+    private long maxHeight;
+    private double[] coordinatesX;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parallelismManager = new ParallelismManager(parallelism);
+        collectionManager = new CollectionManager(store.equals("skiplist")
+                ? new SkipListPersonStore() : new TreeSetPersonStore());
+        collectionManager.setCollection(new PersonGenerator(42).collection(size));
+        collectionManager.setParallelismManager(parallelismManager);
+        heights = collectionManager.longColumn(NumericField.HEIGHT);
+        coordinatesX = collectionManager.doubleColumn(NumericField.COORDINATES_X);
+        minHeight = AggregateKernels.min(null, heights);
+        maxHeight = AggregateKernels.max(null, heights);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parallelismManager.close();
+    }
+
+    @Benchmark
+    public double[] doubleColumn() {
+        return collectionManager.doubleColumn(NumericField.COORDINATES_X);
+    }
+
+    @Benchmark
+    public double sumCoordinatesX() {
+        return AggregateKernels.sum(parallelismManager.getPool(), coordinatesX);
+    }
+
+    @Benchmark
+    public long[] histogramHeight() {
+        return AggregateKernels.histogram(parallelismManager.getPool(), heights, minHeight, maxHeight, 10);
+    }
+
+    @Benchmark
+    public double columnThenSum() {
+        return AggregateKernels.sum(parallelismManager.getPool(),
+                collectionManager.doubleColumn(NumericField.COORDINATES_X));
+    }
+}
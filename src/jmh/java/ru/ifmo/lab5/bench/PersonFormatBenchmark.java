@@ -0,0 +1,78 @@
+package ru.ifmo.lab5.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.ifmo.lab5.model.Person;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Форматирование всех элементов коллекции: прежняя склейка строк, {@link Person#toString()} и {@link Person#appendTo}.
+ * Снижение потока выделений видно по метрике gc.alloc.rate.norm при запуске с профилировщиком {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PersonFormatBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    private List<Person> persons;
+    private StringBuilder buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        persons = new ArrayList<>(new PersonGenerator(42).collection(size));
+        buffer = new StringBuilder(256);
+    }
+
+    @Benchmark
+    public void legacyToString(Blackhole blackhole) {
+        for (Person person : persons) {
+            blackhole.consume(legacyFormat(person));
+        }
+    }
+
+    @Benchmark
+    public void toStringPerElement(Blackhole blackhole) {
+        for (Person person : persons) {
+            blackhole.consume(person.toString());
+        }
+    }
+
+    @Benchmark
+    public void appendToSharedBuffer(Blackhole blackhole) {
+        for (Person person : persons) {
+            buffer.setLength(0);
+            blackhole.consume(person.appendTo(buffer).length());
+        }
+    }
+
+    /**
+     * Прежняя реализация {@link Person#toString()}, оставленная как базовая линия.
+     */
+    private static String legacyFormat(Person person) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+
+        return "Person {" +
+                "\n  id=" + person.getId() +
+                ",\n  name='" + person.getName() + '\'' +
+                ",\n  coordinates=" + "Coordinates{" + "x=" + person.getCoordinates().getX() + ", y=" + person.getCoordinates().getY() + '}' +
+                ",\n  creationDate=" + (person.getCreationDate() != null ? person.getCreationDate().format(formatter) : "N/A") +
+                ",\n  height=" + person.getHeight() +
+                ",\n  eyeColor=" + (person.getEyeColor() == null ? "N/A" : person.getEyeColor().getRussianName()) +
+                ",\n  hairColor=" + (person.getHairColor() == null ? "N/A" : person.getHairColor().getRussianName()) +
+                ",\n  nationality=" + (person.getNationality() == null ? "N/A" : person.getNationality().getRussianName()) +
+                ",\n  location=" + (person.getLocation() != null ? "Location{" + "x=" + person.getLocation().getX()
+                        + ", y=" + person.getLocation().getY() + ", z=" + person.getLocation().getZ()
+                        + ", name='" + (person.getLocation().getName() == null ? "N/A" : person.getLocation().getName()) + '\'' + '}' : "N/A") +
+                "\n}";
+    }
+}
@@ -0,0 +1,95 @@
+package ru.ifmo.lab5.bench;
+
+import ru.ifmo.lab5.model.*;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Генератор синтетических объектов Person для бенчмарков.
+ * Использует фиксированное зерно, чтобы данные были одинаковыми между запусками.
+ */
+public final class PersonGenerator {
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    /**
+     * Распределение значений цвета глаз и волос.
+     */
+    public enum ColorDistribution {
+        /** Все цвета равновероятны, null не встречается. */
+        UNIFORM,
+        /** Каждый следующий цвет встречается вдвое реже предыдущего: половина элементов имеет первый цвет. */
+        SKEWED,
+        /** Половина элементов без цвета (null), остальные распределены равномерно. */
+        SPARSE
+    }
+
+    private final Random random;
+    private final ColorDistribution colorDistribution;
+
+    /**
+     * Конструктор генератора с равномерным распределением цветов.
+     * @param seed Зерно генератора случайных чисел.
+     */
+    public PersonGenerator(long seed) {
+        this(seed, ColorDistribution.UNIFORM);
+    }
+
+    /**
+     * Конструктор.
+     * @param seed Зерно генератора случайных чисел.
+     * @param colorDistribution Распределение цвета глаз и волос.
+     */
+    public PersonGenerator(long seed, ColorDistribution colorDistribution) {
+        this.random = new Random(seed);
+        this.colorDistribution = colorDistribution;
+    }
+
+    /**
+     * Создает человека с указанным ID и заполненными полями.
+     * @param id ID нового элемента.
+     * @return Новый объект Person.
+     */
+    public Person next(long id) {
+        Person person = new Person(id, "Person-" + id,
+                new Coordinates(random.nextDouble() * 348, random.nextFloat() * 1000),
+                1 + random.nextInt(250),
+                nextColor(),
+                nextColor(),
+                COUNTRIES[random.nextInt(COUNTRIES.length)],
+                new Location(random.nextFloat() * 100, random.nextDouble() * 100, random.nextDouble() * 100, "City-" + random.nextInt(1000)));
+        person.setCreationDate(BASE_DATE.plusSeconds(id));
+        return person;
+    }
+
+    private Color nextColor() {
+        switch (colorDistribution) {
+            case SKEWED:
+                int index = 0;
+                while (index < COLORS.length - 1 && random.nextBoolean()) {
+                    index++;
+                }
+                return COLORS[index];
+            case SPARSE:
+                return random.nextBoolean() ? null : COLORS[random.nextInt(COLORS.length)];
+            default:
+                return COLORS[random.nextInt(COLORS.length)];
+        }
+    }
+
+    /**
+     * Создает коллекцию с ID от 1 до size.
+     * @param size Размер коллекции.
+     * @return Упорядоченная коллекция.
+     */
+    public TreeSet<Person> collection(int size) {
+        TreeSet<Person> persons = new TreeSet<>();
+        for (long id = 1; id <= size; id++) {
+            persons.add(next(id));
+        }
+        return persons;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.ifmo.lab5.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ifmo.lab5.commands.*;
+import ru.ifmo.lab5.managers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость выполнения скрипта {@link ScriptRunner}: чтение строк, разбор и вызов команд,
+ * для повторного запуска из кэша и для запуска с чтением файла.
+ * Скрипт состоит из дешевых команд, поэтому в результате преобладают накладные расходы диспетчеризации.
+ * Вывод команд на время замера отправляется в пустой поток.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptRunnerBenchmark {
+    private static final String[] SCRIPT_LINES = {
+            "info",
+            "average_of_height",
+            "count_by_hair_color RED",
+            "# комментарий",
+            "",
+            "show 0 1",
+            "remove_by_id 999999999",
+            "unknown_command"
+    };
+    private static final PrintStream NULL_STREAM = new PrintStream(OutputStream.nullOutputStream());
+
+    @Param({"100", "10000"})
+    public int lines;
+
+    private File script;
+    private ScriptRunner scriptRunner;
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        originalOut = System.out;
+        originalErr = System.err;
+        System.setOut(NULL_STREAM);
+        System.setErr(NULL_STREAM);
+
+        CollectionManager collectionManager = new CollectionManager();
+        collectionManager.setCollection(new PersonGenerator(42).collection(1000));
+        UserInputHandler userInputHandler = new UserInputHandler();
+        CommandManager commandManager = new CommandManager(collectionManager, null, null);
+        scriptRunner = new ScriptRunner(commandManager, userInputHandler);
+        commandManager.setScriptRunner(scriptRunner);
+        commandManager.register("info", new InfoCommand(collectionManager));
+        commandManager.register("show", new ShowCommand(collectionManager, NULL_STREAM));
+        commandManager.register("average_of_height", new AverageOfHeightCommand(collectionManager));
+        commandManager.register("count_by_hair_color", new CountByHairColorCommand(collectionManager, userInputHandler));
+        commandManager.register("remove_by_id", new RemoveByIdCommand(collectionManager));
+
+        List<String> content = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            content.add(SCRIPT_LINES[i % SCRIPT_LINES.length]);
+        }
+        script = File.createTempFile("script-bench", ".txt");
+        Files.write(script.toPath(), content, StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+        script.delete();
+    }
+
+    /**
+     * Повторный запуск: разобранный скрипт берется из кэша, файл не читается.
+     */
+    @Benchmark
+    public void executeScript() {
+        scriptRunner.executeScript(script.getPath());
+    }
+
+    /**
+     * Первый запуск: файл читается и разбирается заново.
+     */
+    @Benchmark
+    public void executeScriptUncached() {
+        scriptRunner.clearCache();
+        scriptRunner.executeScript(script.getPath());
+    }
+}
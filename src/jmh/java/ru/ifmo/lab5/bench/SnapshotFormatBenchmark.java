@@ -0,0 +1,56 @@
+package ru.ifmo.lab5.bench;
+
+import jakarta.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.*;
+import ru.ifmo.lab5.managers.FileManager;
+import ru.ifmo.lab5.model.Person;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение загрузки и сохранения коллекции в XML и в двоичном формате.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotFormatBenchmark {
+
+    @Param({"xml", "bin"})
+    public String format;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private File file;
+    private FileManager fileManager;
+    private TreeSet<Person> persons;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JAXBException {
+        file = File.createTempFile("persons-bench", "." + format);
+        fileManager = FileManager.forPath(file.getPath());
+        persons = new PersonGenerator(42).collection(size);
+        fileManager.save(persons);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public TreeSet<Person> load() throws IOException, JAXBException {
+        return fileManager.load();
+    }
+
+    @Benchmark
+    public void save() throws IOException, JAXBException {
+        fileManager.save(persons);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.ifmo.lab5.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.managers.PersonStore;
+import ru.ifmo.lab5.managers.SkipListPersonStore;
+import ru.ifmo.lab5.managers.TreeSetPersonStore;
+import ru.ifmo.lab5.model.Person;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конкурентный доступ к {@link CollectionManager} с хранилищем на TreeSet (чтение под блокировкой)
+ * и на ConcurrentSkipListMap (чтение без блокировки) при 1, 4 и 16 потоках.
+ * Нагрузка: 90% чтений (поиск по ID и страница из 10 элементов) и 10% обновлений.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreContentionBenchmark {
+    private static final int WRITE_PERCENT = 10;
+
+    @Param({"treeset", "skiplist"})
+    public String store;
+
+    @Param({"100000"})
+    public int size;
+
+    private CollectionManager collectionManager;
+    private List<Person> templates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PersonStore personStore = store.equals("skiplist") ? new SkipListPersonStore() : new TreeSetPersonStore();
+        collectionManager = new CollectionManager(personStore);
+        PersonGenerator generator = new PersonGenerator(42);
+        collectionManager.setCollection(generator.collection(size));
+        // Данные для обновлений готовятся заранее, чтобы в замер не попадала генерация случайных значений
+        templates = List.copyOf(new PersonGenerator(7).collection(1024));
+    }
+
+    private Object operation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = 1 + random.nextInt(size);
+        int kind = random.nextInt(100);
+        if (kind < WRITE_PERCENT) {
+            // update присваивает объекту ID, поэтому каждый раз нужен новый объект
+            Person template = templates.get(random.nextInt(templates.size()));
+            return collectionManager.update(id, new Person(0, template.getName(), template.getCoordinates(), template.getHeight(),
+                    template.getEyeColor(), template.getHairColor(), template.getNationality(), template.getLocation()));
+        }
+        if (kind % 2 == 0) {
+            return collectionManager.findById(id);
+        }
+        return collectionManager.pageFromId(id, 10);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object mixedOneThread() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object mixedFourThreads() {
+        return operation();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object mixedSixteenThreads() {
+        return operation();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.ifmo.lab5.bench;
+
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.managers.ColumnarPersonStore;
+import ru.ifmo.lab5.managers.OffHeapPersonStore;
+import ru.ifmo.lab5.managers.PersonStore;
+import ru.ifmo.lab5.managers.SkipListPersonStore;
+import ru.ifmo.lab5.managers.TreeSetPersonStore;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Отчет о занимаемой памяти: сколько байт приходится на элемент коллекции с каждым хранилищем.
+ * Учитывается все, что держит {@link CollectionManager}: хранилище, индексы по цвету и статистика роста.
+ * Память измеряется как разница занятой кучи после сборки мусора до заполнения менеджера и после;
+ * для хранилища вне кучи отдельно учитываются прямые буферы.
+ * <p>
+ * Запуск: {@code java -Xmx4g -cp target/person-collection-app-benchmarks.jar ru.ifmo.lab5.bench.StoreFootprintReport [размер]}
+ */
+public final class StoreFootprintReport {
+    private static final int DEFAULT_SIZE = 1_000_000;
+    private static final long SEED = 42;
+
+    private StoreFootprintReport() {}
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        Map<String, Supplier<PersonStore>> stores = new LinkedHashMap<>();
+        stores.put("treeset", TreeSetPersonStore::new);
+        stores.put("skiplist", SkipListPersonStore::new);
+        stores.put("columnar", ColumnarPersonStore::new);
+        stores.put("offheap", OffHeapPersonStore::new);
+
+        System.out.printf("Элементов: %d%n", size);
+        System.out.printf("%-10s %12s %14s %16s%n", "хранилище", "куча, МБ", "вне кучи, МБ", "байт на элемент");
+        long baseline = 0;
+        for (Map.Entry<String, Supplier<PersonStore>> entry : stores.entrySet()) {
+            long[] bytes = measure(entry.getValue(), size);
+            long total = bytes[0] + bytes[1];
+            if (baseline == 0) {
+                baseline = total;
+            }
+            System.out.printf("%-10s %12.1f %14.1f %16.1f   (%.0f%% от treeset)%n", entry.getKey(), bytes[0] / 1048576.0,
+                    bytes[1] / 1048576.0, (double) total / size, 100.0 * total / baseline);
+        }
+    }
+
+    /**
+     * Заполняет менеджер с указанным хранилищем элементами по одному, как при загрузке файла,
+     * и возвращает прирост занятой кучи и памяти прямых буферов.
+     */
+    private static long[] measure(Supplier<PersonStore> store, int size) {
+        PersonGenerator generator = new PersonGenerator(SEED);
+        long before = usedHeap();
+        long directBefore = usedDirect();
+        CollectionManager collectionManager = new CollectionManager(store.get());
+        for (long id = 1; id <= size; id++) {
+            collectionManager.addLoaded(generator.next(id));
+        }
+        long after = usedHeap();
+        long directAfter = usedDirect();
+        // Менеджер должен дожить до измерения, иначе сборщик освободит его раньше
+        if (collectionManager.size() != size) {
+            throw new IllegalStateException("Загружено " + collectionManager.size() + " из " + size);
+        }
+        return new long[] {after - before, directAfter - directBefore};
+    }
+
+    private static long usedDirect() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Несколько сборок подряд, пока занятая память не перестанет уменьшаться
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.ifmo.lab5.bench;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.*;
+import ru.ifmo.lab5.managers.XmlFileManager;
+import ru.ifmo.lab5.model.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одного вызова {@link XmlFileManager#save} и {@link XmlFileManager#load}.
+ * Методы с суффиксом {@code WithNewContext} дополнительно создают {@link JAXBContext},
+ * как это делалось при каждом вызове до кэширования контекста.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlFileManagerBenchmark {
+
+    @Param({"0", "1000", "100000"})
+    public int size;
+
+    private File file;
+    private XmlFileManager xmlFileManager;
+    private TreeSet<Person> persons;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JAXBException {
+        file = File.createTempFile("persons-bench", ".xml");
+        xmlFileManager = new XmlFileManager(file.getPath());
+        persons = new PersonGenerator(42).collection(size);
+        xmlFileManager.save(persons);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void save() throws IOException, JAXBException {
+        xmlFileManager.save(persons);
+    }
+
+    @Benchmark
+    public void saveWithNewContext() throws IOException, JAXBException {
+        JAXBContext.newInstance(Person.class, Coordinates.class, Location.class, Color.class, Country.class);
+        xmlFileManager.save(persons);
+    }
+
+    @Benchmark
+    public TreeSet<Person> load() throws IOException, JAXBException {
+        return xmlFileManager.load();
+    }
+
+    @Benchmark
+    public TreeSet<Person> loadWithNewContext() throws IOException, JAXBException {
+        JAXBContext.newInstance(Person.class, Coordinates.class, Location.class, Color.class, Country.class);
+        return xmlFileManager.load();
+    }
+}
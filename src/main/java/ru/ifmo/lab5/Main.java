@@ -6,19 +6,24 @@ import org.jline.reader.LineReaderBuilder;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
 import ru.ifmo.lab5.managers.*;
-import ru.ifmo.lab5.model.Person;
 import ru.ifmo.lab5.util.CommandCompleter;
 import ru.ifmo.lab5.util.ConsoleInputProvider;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.TreeSet;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Главный класс приложения.
  * Инициализирует все компоненты и запускает консольное приложение.
  */
 public class Main {
+    /**
+     * Размер XML файла в байтах, начиная с которого он загружается в несколько потоков.
+     */
+    private static final long PARALLEL_LOAD_THRESHOLD = 32L << 20;
+
     /**
      * Точка входа в программу.
      * @param args аргументы командной строки (не используются).
@@ -32,15 +37,63 @@ public class Main {
 
         try (Terminal terminal = TerminalBuilder.builder().system(true).build()) {
 
-            CollectionManager collectionManager = new CollectionManager();
-            XmlFileManager xmlFileManager = new XmlFileManager(filePath);
+            PersonStore store = createStore(System.getenv("PERSON_COLLECTION_STORE"));
+            if (store == null) {
+                System.err.println("Ошибка: неизвестное хранилище PERSON_COLLECTION_STORE. Допустимые значения: treeset, skiplist, columnar, offheap.");
+                return;
+            }
+            CollectionManager collectionManager = new CollectionManager(store);
+            Integer parallelism = parseParallelism(System.getenv("PERSON_COLLECTION_PARALLELISM"));
+            if (parallelism == null) {
+                parallelism = ParallelismManager.defaultParallelism();
+                System.err.println("Ошибка: PERSON_COLLECTION_PARALLELISM должна быть целым числом от 1 до "
+                        + ParallelismManager.MAX_PARALLELISM + ". Используется число процессоров: " + parallelism + ".");
+            }
+            ParallelismManager parallelismManager = new ParallelismManager(parallelism);
+            collectionManager.setParallelismManager(parallelismManager);
+            // В режиме отладки накопленная статистика сверяется с полным пересчетом
+            collectionManager.setVerifyAggregates(Boolean.parseBoolean(System.getenv("PERSON_COLLECTION_DEBUG")));
+            JournalManager journalManager;
+            FileManager fileManager = FileManager.forPath(filePath);
+            fileManager.setKeepBackup(Boolean.parseBoolean(System.getenv("PERSON_COLLECTION_BACKUP")));
 
             try {
-                TreeSet<Person> loadedCollection = xmlFileManager.load();
-                collectionManager.setCollection(loadedCollection);
-                System.out.println("Коллекция успешно загружена. Загружено элементов: " + loadedCollection.size());
-            } catch (FileNotFoundException e) {
-                System.out.println("Файл коллекции не найден. Будет создана новая пустая коллекция.");
+                boolean mapped = Boolean.parseBoolean(System.getenv("PERSON_COLLECTION_MMAP"));
+                if (mapped && fileManager instanceof BinaryFileManager) {
+                    // Записи декодируются лениво при первом обращении
+                    ((BinaryFileManager) fileManager).loadMapped(collectionManager);
+                } else {
+                    if (mapped) {
+                        System.out.println("Отображение в память поддерживается только для файлов " + FileManager.BINARY_EXTENSION + ", файл будет прочитан целиком.");
+                    }
+                    ForkJoinPool scanPool = parallelismManager.getPool();
+                    if (fileManager instanceof XmlFileManager && scanPool != null
+                            && Files.isRegularFile(Paths.get(filePath)) && Files.size(Paths.get(filePath)) >= PARALLEL_LOAD_THRESHOLD) {
+                        // Части файла разбираются параллельно, прогресс сообщается по готовности каждой части
+                        ((XmlFileManager) fileManager).loadParallel(collectionManager,
+                                count -> {
+                                    if (count > 0) {
+                                        System.out.println("Загружено элементов: " + count + "...");
+                                    }
+                                }, scanPool);
+                    } else {
+                        fileManager.load(collectionManager, count -> {
+                            if (count > 0 && count % FileManager.PROGRESS_STEP == 0) {
+                                System.out.println("Загружено элементов: " + count + "...");
+                            }
+                        });
+                    }
+                }
+                System.out.println("Коллекция успешно загружена. Загружено элементов: " + collectionManager.size());
+                // Загруженное состояние совпадает с файлом, несохраненными считаются только изменения из журнала и новые
+                collectionManager.markSaved(collectionManager.getModificationCount());
+
+                journalManager = new JournalManager(filePath);
+                int replayed = journalManager.replay(collectionManager);
+                if (replayed > 0) {
+                    System.out.println("Из журнала восстановлено несохраненных изменений: " + replayed);
+                }
+                collectionManager.addChangeListener(journalManager);
             } catch (JAXBException | IOException | SecurityException e) {
                 System.err.println("Критическая ошибка при загрузке коллекции из файла. Проверьте содержимое файла и права доступа.");
                 e.printStackTrace();
@@ -48,7 +101,16 @@ public class Main {
                 return;
             }
 
-            CommandManager commandManager = new CommandManager(collectionManager, xmlFileManager);
+            SaveManager saveManager = new SaveManager(collectionManager, fileManager, journalManager);
+            Long autosaveInterval = parseAutosaveInterval(System.getenv("PERSON_COLLECTION_AUTOSAVE"));
+            if (autosaveInterval == null) {
+                System.err.println("Ошибка: PERSON_COLLECTION_AUTOSAVE должна быть целым числом секунд больше нуля. Автосохранение отключено.");
+            } else if (autosaveInterval > 0) {
+                saveManager.startAutosave(autosaveInterval);
+                System.out.println("Автосохранение включено, интервал: " + autosaveInterval + " с.");
+            }
+
+            CommandManager commandManager = new CommandManager(collectionManager, fileManager, saveManager);
             CommandCompleter commandCompleter = new CommandCompleter(commandManager);
 
             LineReader lineReader = LineReaderBuilder.builder()
@@ -71,7 +133,18 @@ public class Main {
             );
 
             app.registerCommands();
-            app.run();
+            try {
+                app.run();
+            } finally {
+                // Запущенное фоновое сохранение дописывается до конца, иначе журнал обрезался бы не вовремя
+                saveManager.close();
+                parallelismManager.close();
+                try {
+                    journalManager.close();
+                } catch (IOException e) {
+                    System.err.println("Ошибка при закрытии журнала: " + e.getMessage());
+                }
+            }
 
         } catch (IOException e) {
             System.err.println("Критическая ошибка терминала: " + e.getMessage());
@@ -81,4 +154,59 @@ public class Main {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Разбирает интервал автосохранения из переменной окружения PERSON_COLLECTION_AUTOSAVE.
+     * @param value Интервал в секундах или null, если переменная не задана.
+     * @return Интервал в секундах, 0 - автосохранение выключено, null - значение некорректно.
+     */
+    private static Long parseAutosaveInterval(String value) {
+        if (value == null || value.isBlank()) {
+            return 0L;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds > 0 ? seconds : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Разбирает число потоков для проходов по коллекции из переменной окружения PERSON_COLLECTION_PARALLELISM.
+     * @param value Число потоков или null, если переменная не задана.
+     * @return Число потоков (по умолчанию - число процессоров) или null, если значение некорректно.
+     */
+    private static Integer parseParallelism(String value) {
+        if (value == null || value.isBlank()) {
+            return ParallelismManager.defaultParallelism();
+        }
+        try {
+            int parallelism = Integer.parseInt(value.trim());
+            return parallelism >= 1 && parallelism <= ParallelismManager.MAX_PARALLELISM ? parallelism : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Создает хранилище коллекции по значению переменной окружения PERSON_COLLECTION_STORE.
+     * @param name Имя хранилища: treeset (по умолчанию), skiplist, columnar или offheap.
+     * @return Новое хранилище или null, если имя не распознано.
+     */
+    private static PersonStore createStore(String name) {
+        if (name == null || name.isBlank() || name.equalsIgnoreCase("treeset")) {
+            return new TreeSetPersonStore();
+        }
+        if (name.equalsIgnoreCase("skiplist")) {
+            return new SkipListPersonStore();
+        }
+        if (name.equalsIgnoreCase("columnar")) {
+            return new ColumnarPersonStore();
+        }
+        if (name.equalsIgnoreCase("offheap")) {
+            return new OffHeapPersonStore();
+        }
+        return null;
+    }
+}
@@ -25,15 +25,18 @@ public class AddCommand implements Command {
 
     @Override
     public CommandResult execute(String arguments) {
+        Person newPerson;
+        try {
+            newPerson = userInputHandler.requestPersonData();
+        } catch (Exception e) {
+            return CommandResult.error("Ввод данных был прерван. Команда не выполнена.");
+        }
         try {
-            Person newPerson = userInputHandler.requestPersonData();
             collectionManager.add(newPerson);
-            return CommandResult.success("Новый человек успешно добавлен в коллекцию с ID: " + newPerson.getId());
         } catch (IllegalArgumentException e) {
             return CommandResult.error("Ошибка при добавлении: " + e.getMessage());
-        } catch (Exception e) {
-            return CommandResult.error("Ввод данных был прерван. Команда не выполнена.");
         }
+        return CommandResult.success("Новый человек успешно добавлен в коллекцию с ID: " + newPerson.getId());
     }
 
     @Override
@@ -23,16 +23,17 @@ public class AddIfMinCommand implements Command {
 
     @Override
     public CommandResult execute(String arguments) {
+        Person newPerson;
         try {
-            Person newPerson = userInputHandler.requestPersonData();
-            if (collectionManager.addIfMin(newPerson)) {
-                return CommandResult.success("Элемент успешно добавлен с ID: " + newPerson.getId());
-            } else {
-                return CommandResult.success("Элемент не был добавлен, так как его значение (ID) не меньше минимального.");
-            }
+            newPerson = userInputHandler.requestPersonData();
         } catch (Exception e) {
             return CommandResult.error("Ввод данных был прерван. Команда не выполнена.");
         }
+        if (collectionManager.addIfMin(newPerson)) {
+            return CommandResult.success("Элемент успешно добавлен с ID: " + newPerson.getId());
+        } else {
+            return CommandResult.success("Элемент не был добавлен, так как его значение (ID) не меньше минимального.");
+        }
     }
 
     @Override
@@ -14,7 +14,7 @@ public class AverageOfHeightCommand implements Command {
 
     @Override
     public CommandResult execute(String arguments) {
-        if (collectionManager.getCollection().isEmpty()) {
+        if (collectionManager.isEmpty()) {
             return CommandResult.success("Коллекция пуста, невозможно рассчитать средний рост.");
         }
         double averageHeight = collectionManager.getAverageHeight();
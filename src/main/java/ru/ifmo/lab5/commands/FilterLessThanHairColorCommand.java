@@ -2,9 +2,7 @@ package ru.ifmo.lab5.commands;
 import ru.ifmo.lab5.managers.CollectionManager;
 import ru.ifmo.lab5.managers.UserInputHandler;
 import ru.ifmo.lab5.model.Color;
-import ru.ifmo.lab5.model.Person;
 import ru.ifmo.lab5.util.CommandResult;
-import java.util.TreeSet;
 
 /**
  * Команда для вывода элементов, значение поля hairColor которых меньше заданного.
@@ -40,14 +38,16 @@ public class FilterLessThanHairColorCommand implements Command {
             return CommandResult.error("Ввод был прерван.");
         }
 
-        TreeSet<Person> filteredPersons = collectionManager.filterLessThanHairColor(thresholdHairColor);
+        // Результат читается сразу и один раз, поэтому копировать его не нужно
+        StringBuilder sb = new StringBuilder("Люди с цветом волос меньше, чем " + thresholdHairColor.getRussianName() + ":\n");
+        int headerLength = sb.length();
+        collectionManager.filterLessThanHairColor(thresholdHairColor)
+                .forEach(person -> person.appendTo(sb).append("\n---\n"));
 
-        if (filteredPersons.isEmpty()) {
+        if (sb.length() == headerLength) {
             return CommandResult.success("Не найдено людей с цветом волос меньше, чем " + thresholdHairColor.getRussianName() + ".");
         } else {
-            StringBuilder sb = new StringBuilder("Люди с цветом волос меньше, чем " + thresholdHairColor.getRussianName() + ":\n");
-            filteredPersons.forEach(person -> sb.append(person.toString()).append("\n---\n"));
-            if (sb.length() > 4) sb.setLength(sb.length() - 5);
+            sb.setLength(sb.length() - 5);
             return CommandResult.success(sb.toString());
         }
     }
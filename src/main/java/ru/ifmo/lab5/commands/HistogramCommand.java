@@ -0,0 +1,103 @@
+package ru.ifmo.lab5.commands;
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.managers.NumericField;
+import ru.ifmo.lab5.util.AggregateKernels;
+import ru.ifmo.lab5.util.CommandLine;
+import ru.ifmo.lab5.util.CommandResult;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Команда для построения гистограммы числового поля: диапазон значений делится на равные интервалы
+ * и для каждого выводится количество элементов.
+ */
+public class HistogramCommand implements Command {
+    private static final int DEFAULT_BUCKETS = 10;
+    private static final int MAX_BUCKETS = 1000;
+    private static final int BAR_WIDTH = 40;
+
+    private final CollectionManager collectionManager;
+
+    public HistogramCommand(CollectionManager collectionManager) {
+        this.collectionManager = collectionManager;
+    }
+
+    @Override
+    public CommandResult execute(String arguments) {
+        String[] parts = CommandLine.tokenize(arguments);
+        NumericField field = parts.length > 0 ? NumericField.fromName(parts[0]) : null;
+        if (field == null || parts.length > 2) {
+            return CommandResult.error("Использование: histogram <field> [buckets], поля: " + NumericField.names());
+        }
+        int buckets = DEFAULT_BUCKETS;
+        if (parts.length == 2) {
+            try {
+                buckets = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                buckets = 0;
+            }
+            if (buckets < 1 || buckets > MAX_BUCKETS) {
+                return CommandResult.error("Количество интервалов должно быть целым числом от 1 до " + MAX_BUCKETS + ".");
+            }
+        }
+
+        ForkJoinPool pool = collectionManager.getScanPool();
+        StringBuilder result = new StringBuilder();
+        if (field.isInteger()) {
+            long[] values = collectionManager.longColumn(field);
+            if (values.length == 0) {
+                return CommandResult.success("Коллекция пуста.");
+            }
+            long min = AggregateKernels.min(pool, values);
+            long max = AggregateKernels.max(pool, values);
+            long[] counts = AggregateKernels.histogram(pool, values, min, max, buckets);
+            double width = ((double) max - min + 1) / counts.length;
+            long largest = maxCount(counts);
+            for (int i = 0; i < counts.length; i++) {
+                appendBucket(result, String.format("[%.1f; %.1f)", min + i * width, min + (i + 1) * width),
+                        counts[i], largest);
+            }
+        } else {
+            double[] values = collectionManager.doubleColumn(field);
+            if (values.length == 0) {
+                return CommandResult.success("Ни у одного элемента нет поля " + field.getFieldName() + ".");
+            }
+            double min = AggregateKernels.min(pool, values);
+            double max = AggregateKernels.max(pool, values);
+            long[] counts = AggregateKernels.histogram(pool, values, min, max, buckets);
+            double width = (max - min) / counts.length;
+            long largest = maxCount(counts);
+            for (int i = 0; i < counts.length; i++) {
+                appendBucket(result, String.format("[%.3f; %.3f%s", min + i * width, min + (i + 1) * width,
+                        i == counts.length - 1 ? "]" : ")"), counts[i], largest);
+            }
+        }
+        return CommandResult.success("Гистограмма " + field.getFieldName() + ":\n" + result.toString().trim());
+    }
+
+    private static long maxCount(long[] counts) {
+        long max = 0;
+        for (long count : counts) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    /**
+     * Добавляет строку интервала; длина полосы пропорциональна количеству относительно самого большого интервала.
+     */
+    private static void appendBucket(StringBuilder result, String range, long count, long maxCount) {
+        int bar = (int) Math.round((double) count * BAR_WIDTH / maxCount);
+        result.append(String.format("%-32s %8d ", range, count));
+        for (int i = 0; i < bar; i++) {
+            result.append('#');
+        }
+        result.append('\n');
+    }
+
+    @Override
+    public String getDescription() {
+        return "histogram <field> [buckets] : вывести гистограмму числового поля (" + NumericField.names()
+                + "), по умолчанию " + DEFAULT_BUCKETS + " интервалов";
+    }
+}
@@ -0,0 +1,45 @@
+package ru.ifmo.lab5.commands;
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.managers.NumericField;
+import ru.ifmo.lab5.util.AggregateKernels;
+import ru.ifmo.lab5.util.CommandResult;
+
+import java.util.OptionalLong;
+
+/**
+ * Команда для нахождения минимальное значения числового поля среди элементов коллекции.
+ * Для роста значение берется из накопленной статистики, остальные поля просматриваются по столбцу значений.
+ */
+public class MinCommand implements Command {
+    private final CollectionManager collectionManager;
+
+    public MinCommand(CollectionManager collectionManager) {
+        this.collectionManager = collectionManager;
+    }
+
+    @Override
+    public CommandResult execute(String arguments) {
+        NumericField field = NumericField.fromName(arguments == null ? "" : arguments.trim());
+        if (field == null) {
+            return CommandResult.error("Укажите поле: " + NumericField.names());
+        }
+        if (field.isInteger()) {
+            OptionalLong value = collectionManager.getMinHeight();
+            if (!value.isPresent()) {
+                return CommandResult.success("Коллекция пуста.");
+            }
+            return CommandResult.success("Минимальное значение " + field.getFieldName() + ": " + value.getAsLong());
+        }
+        double[] values = collectionManager.doubleColumn(field);
+        if (values.length == 0) {
+            return CommandResult.success("Ни у одного элемента нет поля " + field.getFieldName() + ".");
+        }
+        return CommandResult.success("Минимальное значение " + field.getFieldName() + ": "
+                + AggregateKernels.min(collectionManager.getScanPool(), values));
+    }
+
+    @Override
+    public String getDescription() {
+        return "min <field> : вывести минимальное значение числового поля (" + NumericField.names() + ")";
+    }
+}
@@ -15,21 +15,20 @@ public class RemoveLowerCommand implements Command {
 
     @Override
     public CommandResult execute(String arguments) {
-        if (collectionManager.getCollection().isEmpty()) {
+        if (collectionManager.isEmpty()) {
             return CommandResult.success("Коллекция пуста, нечего удалять.");
         }
+        long thresholdId;
         try {
-            long thresholdId = userInputHandler.requestPrimitiveLong("Введите ID эталонного элемента для сравнения:", false, 1L, null);
-            Person tempThresholdPerson = new Person();
-            tempThresholdPerson.setId(thresholdId);
-
-            int initialSize = collectionManager.getCollection().size();
-            collectionManager.removeLower(tempThresholdPerson);
-            int removedCount = initialSize - collectionManager.getCollection().size();
-            return CommandResult.success("Удалено " + removedCount + " элементов, ID которых меньше " + thresholdId + ".");
+            thresholdId = userInputHandler.requestPrimitiveLong("Введите ID эталонного элемента для сравнения:", false, 1L, null);
         } catch (Exception e) {
             return CommandResult.error("Ввод данных был прерван. Команда не выполнена.");
         }
+        Person tempThresholdPerson = new Person();
+        tempThresholdPerson.setId(thresholdId);
+
+        int removedCount = collectionManager.removeLower(tempThresholdPerson);
+        return CommandResult.success("Удалено " + removedCount + " элементов, ID которых меньше " + thresholdId + ".");
     }
 
     @Override
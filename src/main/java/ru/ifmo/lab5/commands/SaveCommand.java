@@ -1,24 +1,44 @@
 package ru.ifmo.lab5.commands;
 
 import jakarta.xml.bind.JAXBException;
-import ru.ifmo.lab5.managers.CollectionManager;
-import ru.ifmo.lab5.managers.XmlFileManager;
+import ru.ifmo.lab5.managers.SaveManager;
+import ru.ifmo.lab5.util.CommandLine;
 import ru.ifmo.lab5.util.CommandResult;
 import java.io.IOException;
 
 public class SaveCommand implements Command {
-    private final CollectionManager collectionManager;
-    private final XmlFileManager xmlFileManager;
+    private final SaveManager saveManager;
 
-    public SaveCommand(CollectionManager collectionManager, XmlFileManager xmlFileManager) {
-        this.collectionManager = collectionManager;
-        this.xmlFileManager = xmlFileManager;
+    public SaveCommand(SaveManager saveManager) {
+        this.saveManager = saveManager;
     }
 
     @Override
     public CommandResult execute(String arguments) {
+        boolean indent = false;
+        boolean async = false;
+        boolean force = false;
+        for (String option : CommandLine.tokenize(arguments)) {
+            if (option.equals("--indent")) {
+                indent = true;
+            } else if (option.equals("--async")) {
+                async = true;
+            } else if (option.equals("--force")) {
+                force = true;
+            } else {
+                return CommandResult.error("Неизвестный параметр: " + option + ". Использование: " + getDescription());
+            }
+        }
+        if (async) {
+            if (saveManager.saveAsync(indent, force)) {
+                return CommandResult.success("Сохранение запущено в фоне. Ход сохранения: save_status");
+            }
+            return CommandResult.success("Сохранение уже идет, после него коллекция будет сохранена еще раз. Ход сохранения: save_status");
+        }
         try {
-            xmlFileManager.save(collectionManager.getCollection());
+            if (saveManager.save(indent, force).isSkipped()) {
+                return CommandResult.success("Коллекция не изменялась после последнего сохранения, файл не перезаписан (save --force - перезаписать).");
+            }
             return CommandResult.success("Коллекция успешно сохранена в файл.");
         } catch (JAXBException e) {
             return CommandResult.error("Ошибка при преобразовании коллекции в XML: " + e.getMessage());
@@ -31,6 +51,6 @@ public class SaveCommand implements Command {
 
     @Override
     public String getDescription() {
-        return "save : сохранить коллекцию в файл";
+        return "save [--indent] [--async] [--force] : сохранить коллекцию в файл (--indent - с отступами, --async - в фоне, --force - даже без изменений)";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+package ru.ifmo.lab5.commands;
+
+import ru.ifmo.lab5.managers.SaveManager;
+import ru.ifmo.lab5.util.CommandResult;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Команда для вывода хода текущего и итога последнего сохранения.
+ */
+public class SaveStatusCommand implements Command {
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final SaveManager saveManager;
+
+    public SaveStatusCommand(SaveManager saveManager) {
+        this.saveManager = saveManager;
+    }
+
+    @Override
+    public CommandResult execute(String arguments) {
+        SaveManager.SaveStatus status = saveManager.getStatus();
+        StringBuilder result = new StringBuilder();
+        if (status.isSaving()) {
+            long total = status.getElementsTotal();
+            long percent = total == 0 ? 0 : status.getElementsWritten() * 100 / total;
+            result.append("Идет сохранение: записано элементов ").append(status.getElementsWritten())
+                    .append(" из ").append(total).append(" (").append(percent).append("%), прошло ")
+                    .append(status.getElapsedMillis()).append(" мс.");
+            if (status.isRerunPending()) {
+                result.append(" После него запланировано повторное сохранение.");
+            }
+        } else {
+            result.append("Сохранение не выполняется.");
+        }
+
+        SaveManager.SaveResult last = status.getLastResult();
+        result.append('\n');
+        if (last == null) {
+            result.append("С момента запуска коллекция не сохранялась.");
+        } else if (last.isSuccess()) {
+            result.append("Последнее сохранение завершено в ").append(TIME_FORMATTER.format(last.getFinishedAt()))
+                    .append(": элементов ").append(last.getElements())
+                    .append(", записано байт ").append(last.getBytes())
+                    .append(", длительность ").append(last.getDurationMillis()).append(" мс.");
+        } else {
+            result.append("Последнее сохранение завершилось ошибкой в ").append(TIME_FORMATTER.format(last.getFinishedAt()))
+                    .append(" (записано элементов ").append(last.getElements())
+                    .append(", длительность ").append(last.getDurationMillis()).append(" мс): ")
+                    .append(last.getError());
+        }
+        return CommandResult.success(result.toString());
+    }
+
+    @Override
+    public String getDescription() {
+        return "save_status : вывести ход текущего сохранения (в элементах) и итог последнего (элементы, байты, длительность)";
+    }
+}
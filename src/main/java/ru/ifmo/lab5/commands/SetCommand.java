@@ -0,0 +1,41 @@
+package ru.ifmo.lab5.commands;
+import ru.ifmo.lab5.managers.ParallelismManager;
+import ru.ifmo.lab5.util.CommandLine;
+import ru.ifmo.lab5.util.CommandResult;
+
+/**
+ * Команда для изменения настроек приложения во время работы.
+ * Пока поддерживается одна настройка - parallelism, число потоков для полных проходов по коллекции.
+ */
+public class SetCommand implements Command {
+    private final ParallelismManager parallelismManager;
+
+    public SetCommand(ParallelismManager parallelismManager) {
+        this.parallelismManager = parallelismManager;
+    }
+
+    @Override
+    public CommandResult execute(String arguments) {
+        String[] parts = CommandLine.tokenize(arguments);
+        if (parts.length == 0) {
+            return CommandResult.success("parallelism = " + parallelismManager.getParallelism());
+        }
+        if (!parts[0].equalsIgnoreCase("parallelism")) {
+            return CommandResult.error("Неизвестная настройка '" + parts[0] + "'. Доступные настройки: parallelism.");
+        }
+        if (parts.length != 2) {
+            return CommandResult.error("Использование: set parallelism <N>");
+        }
+        try {
+            parallelismManager.setParallelism(Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException e) {
+            return CommandResult.error("Число потоков должно быть целым числом от 1 до " + ParallelismManager.MAX_PARALLELISM + ".");
+        }
+        return CommandResult.success("Параллелизм проходов по коллекции: " + parallelismManager.getParallelism());
+    }
+
+    @Override
+    public String getDescription() {
+        return "set [parallelism N] : показать настройки или задать число потоков для полных проходов по коллекции";
+    }
+}
@@ -2,42 +2,125 @@ package ru.ifmo.lab5.commands;
 
 import ru.ifmo.lab5.managers.CollectionManager;
 import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.CommandLine;
 import ru.ifmo.lab5.util.CommandResult;
 
+import java.io.PrintStream;
+import java.util.List;
+
 /**
- * Команда для вывода всех элементов коллекции в строковом представлении.
+ * Команда для вывода элементов коллекции в строковом представлении.
+ * Элементы печатаются по одному сразу в поток вывода, поэтому первая строка появляется без задержки,
+ * а расход памяти не зависит от размера коллекции.
+ * Поддерживает постраничный вывод по смещению ({@code show offset limit})
+ * и по курсору ID ({@code show --from-id id [limit]}).
  */
 public class ShowCommand implements Command {
+    private static final String FROM_ID_OPTION = "--from-id";
+    private static final String SEPARATOR = "---";
+    private static final int BATCH_SIZE = 1024;
+
     private final CollectionManager collectionManager;
+    private final PrintStream out;
 
     /**
-     * Конструктор команды.
+     * Конструктор команды, выводящей элементы в стандартный поток вывода.
      * @param collectionManager Менеджер коллекции.
      */
     public ShowCommand(CollectionManager collectionManager) {
+        this(collectionManager, System.out);
+    }
+
+    /**
+     * Конструктор команды.
+     * @param collectionManager Менеджер коллекции.
+     * @param out Поток, в который печатаются элементы.
+     */
+    public ShowCommand(CollectionManager collectionManager, PrintStream out) {
         this.collectionManager = collectionManager;
+        this.out = out;
     }
 
     @Override
     public CommandResult execute(String arguments) {
-        if (collectionManager.getCollection().isEmpty()) {
+        if (collectionManager.isEmpty()) {
             return CommandResult.success("Коллекция пуста.");
         }
 
-        StringBuilder sb = new StringBuilder("Элементы коллекции:\n");
-        for (Person person : collectionManager.getCollection()) {
-            sb.append(person.toString()).append("\n");
-            sb.append("---\n");
+        String[] args = CommandLine.tokenize(arguments);
+        long limit;
+        long offset = 0;
+        long fromId = 0;
+        boolean cursor = false;
+        try {
+            if (args.length > 0 && args[0].equals(FROM_ID_OPTION)) {
+                if (args.length < 2 || args.length > 3) {
+                    return CommandResult.error("Использование: show --from-id id [limit]");
+                }
+                cursor = true;
+                fromId = Long.parseLong(args[1]);
+                limit = args.length == 3 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+            } else if (args.length <= 2) {
+                offset = args.length > 0 ? Long.parseLong(args[0]) : 0;
+                limit = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+                if (offset < 0) {
+                    return CommandResult.error("Смещение не может быть отрицательным.");
+                }
+            } else {
+                return CommandResult.error("Использование: show [offset limit] | show --from-id id [limit]");
+            }
+        } catch (NumberFormatException e) {
+            return CommandResult.error("Смещение, ID и количество должны быть целыми числами.");
+        }
+        if (limit <= 0) {
+            return CommandResult.error("Количество элементов должно быть больше 0.");
+        }
+
+        // Элементы читаются порциями: блокировка коллекции держится только на время копирования порции,
+        // а память ограничена размером порции, а не коллекции
+        List<Person> batch = cursor
+                ? collectionManager.pageFromId(fromId, BATCH_SIZE)
+                : collectionManager.page(offset, BATCH_SIZE);
+        if (batch.isEmpty()) {
+            return CommandResult.success("Нет элементов в запрошенном диапазоне.");
         }
 
-        if (sb.length() > 4) {
-            sb.setLength(sb.length() - 5);
+        out.println("Элементы коллекции:");
+        // Один буфер на весь вывод: строка каждого элемента собирается в нем без промежуточных строк
+        StringBuilder row = new StringBuilder(256);
+        long printed = 0;
+        long lastId = 0;
+        while (!batch.isEmpty() && printed < limit) {
+            for (Person person : batch) {
+                if (printed == limit) {
+                    break;
+                }
+                if (printed > 0) {
+                    out.println(SEPARATOR);
+                }
+                row.setLength(0);
+                out.println(person.appendTo(row));
+                lastId = person.getId();
+                printed++;
+            }
+            batch = printed < limit && batch.size() == BATCH_SIZE
+                    ? collectionManager.pageFromId(lastId + 1, BATCH_SIZE)
+                    : List.of();
+        }
+        out.flush();
+        if (printed == limit) {
+            List<Person> next = collectionManager.pageFromId(lastId + 1, 1);
+            if (!next.isEmpty()) {
+                return CommandResult.success("Следующая страница: show " + (cursor
+                        ? FROM_ID_OPTION + " " + next.get(0).getId()
+                        : String.valueOf(offset + printed)) + " " + limit);
+            }
         }
-        return CommandResult.success(sb.toString());
+        return CommandResult.success();
     }
 
     @Override
     public String getDescription() {
-        return "вывести в стандартный поток вывода все элементы коллекции в строковом представлении";
+        return "show [offset limit] | show --from-id id [limit] : вывести в стандартный поток вывода элементы коллекции в строковом представлении";
     }
-}
\ No newline at end of file
+}
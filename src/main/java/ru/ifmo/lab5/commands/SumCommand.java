@@ -0,0 +1,39 @@
+package ru.ifmo.lab5.commands;
+import ru.ifmo.lab5.managers.CollectionManager;
+import ru.ifmo.lab5.managers.NumericField;
+import ru.ifmo.lab5.util.AggregateKernels;
+import ru.ifmo.lab5.util.CommandResult;
+
+/**
+ * Команда для вычисления суммы числового поля по всем элементам коллекции.
+ * Сумма роста берется из накопленной статистики, остальные поля суммируются по столбцу значений.
+ */
+public class SumCommand implements Command {
+    private final CollectionManager collectionManager;
+
+    public SumCommand(CollectionManager collectionManager) {
+        this.collectionManager = collectionManager;
+    }
+
+    @Override
+    public CommandResult execute(String arguments) {
+        NumericField field = NumericField.fromName(arguments == null ? "" : arguments.trim());
+        if (field == null) {
+            return CommandResult.error("Укажите поле: " + NumericField.names());
+        }
+        if (field.isInteger()) {
+            return CommandResult.success("Сумма " + field.getFieldName() + ": " + collectionManager.getHeightSum());
+        }
+        double[] values = collectionManager.doubleColumn(field);
+        if (values.length == 0) {
+            return CommandResult.success("Ни у одного элемента нет поля " + field.getFieldName() + ".");
+        }
+        return CommandResult.success("Сумма " + field.getFieldName() + " по " + values.length + " элементам: "
+                + AggregateKernels.sum(collectionManager.getScanPool(), values));
+    }
+
+    @Override
+    public String getDescription() {
+        return "sum <field> : вывести сумму числового поля (" + NumericField.names() + ")";
+    }
+}
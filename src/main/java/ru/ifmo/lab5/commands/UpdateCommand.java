@@ -28,25 +28,29 @@ public class UpdateCommand implements Command {
         if (arguments == null || arguments.trim().isEmpty()) {
             return CommandResult.error("Необходимо указать ID элемента для обновления.");
         }
+        long id;
         try {
-            long id = Long.parseLong(arguments.trim());
-            if (collectionManager.getCollection().stream().noneMatch(p -> p.getId() == id)) {
-                return CommandResult.error("Человек с ID " + id + " не найден.");
-            }
-
-            System.out.println("Ввод новых данных для человека с ID " + id + ":");
-            Person updatedPersonData = userInputHandler.requestPersonData();
-
-            if (collectionManager.update(id, updatedPersonData)) {
-                return CommandResult.success("Человек с ID " + id + " успешно обновлен.");
-            } else {
-                return CommandResult.error("Не удалось обновить человека с ID " + id + ".");
-            }
+            id = Long.parseLong(arguments.trim());
         } catch (NumberFormatException e) {
             return CommandResult.error("ID должен быть числом.");
+        }
+        if (collectionManager.findById(id).isEmpty()) {
+            return CommandResult.error("Человек с ID " + id + " не найден.");
+        }
+
+        System.out.println("Ввод новых данных для человека с ID " + id + ":");
+        Person updatedPersonData;
+        try {
+            updatedPersonData = userInputHandler.requestPersonData();
         } catch (Exception e) {
             return CommandResult.error("Ввод данных был прерван. Команда не выполнена.");
         }
+
+        if (collectionManager.update(id, updatedPersonData)) {
+            return CommandResult.success("Человек с ID " + id + " успешно обновлен.");
+        } else {
+            return CommandResult.error("Не удалось обновить человека с ID " + id + ".");
+        }
     }
 
     @Override
@@ -0,0 +1,393 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Coordinates;
+import ru.ifmo.lab5.model.Location;
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.AtomicFileWriter;
+import ru.ifmo.lab5.util.PersonCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Управляет загрузкой и сохранением коллекции в компактном двоичном формате.
+ * <p>
+ * Формат (все числа big-endian):
+ * <pre>
+ * заголовок (32 байта): magic "PCOL", версия (short), флаги (short), число записей (long),
+ *                      смещение записей (long), смещение столбца ID (long)
+ * таблица строк: число строк (int), абсолютные смещения строк (long[]), строки (длина int + байты UTF-8)
+ * записи: по {@value #RECORD_SIZE} байт на элемент, в порядке возрастания ID
+ * столбец ID: ID всех записей подряд (long[]), чтобы построить индекс, не читая сами записи
+ * CRC32 всех предыдущих байт (int)
+ * </pre>
+ * Имена людей и местоположений хранятся в таблице строк, записи ссылаются на них по номеру (-1 для null).
+ * Записи фиксированной ширины позволяют читать отдельные поля без разбора всего элемента.
+ */
+public class BinaryFileManager implements FileManager {
+    static final int MAGIC = 0x50434F4C; // "PCOL"
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 72;
+
+    static final int OFFSET_ID = 0;
+    static final int OFFSET_NAME = 8;
+    static final int OFFSET_FLAGS = 12;
+    static final int OFFSET_EYE_COLOR = 13;
+    static final int OFFSET_HAIR_COLOR = 14;
+    static final int OFFSET_NATIONALITY = 15;
+    static final int OFFSET_COORDINATES_X = 16;
+    static final int OFFSET_COORDINATES_Y = 24;
+    static final int OFFSET_LOCATION_X = 28;
+    static final int OFFSET_CREATION_SECOND = 32;
+    static final int OFFSET_CREATION_NANO = 40;
+    static final int OFFSET_LOCATION_NAME = 44;
+    static final int OFFSET_HEIGHT = 48;
+    static final int OFFSET_LOCATION_Y = 56;
+    static final int OFFSET_LOCATION_Z = 64;
+
+    static final int FLAG_COORDINATES = 1;
+    static final int FLAG_CREATION_DATE = 1 << 1;
+    static final int FLAG_LOCATION = 1 << 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final String filePath;
+    private boolean keepBackup = false;
+
+    /**
+     * Конструктор.
+     * @param filePath Путь к двоичному файлу.
+     */
+    public BinaryFileManager(String filePath) {
+        this.filePath = filePath.replace("\"", "");
+    }
+
+    @Override
+    public void setKeepBackup(boolean keepBackup) {
+        this.keepBackup = keepBackup;
+    }
+
+    @Override
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Загружает коллекцию из двоичного файла.
+     * @return Загруженная коллекция.
+     * @throws IOException если произошла ошибка ввода-вывода, файл поврежден или имеет неверный формат.
+     */
+    @Override
+    public TreeSet<Person> load() throws IOException {
+        TreeSet<Person> persons = new TreeSet<>();
+        readPersons(persons::add, null);
+        return persons;
+    }
+
+    /**
+     * Загружает коллекцию из двоичного файла прямо в менеджер коллекции.
+     * Контрольная сумма проверяется после чтения последней записи, поэтому при ошибке
+     * в менеджере могут остаться уже прочитанные элементы.
+     * @param collectionManager Менеджер коллекции, в который добавляются элементы.
+     * @param progressListener Получает количество прочитанных элементов каждые {@value #PROGRESS_STEP}
+     *                         элементов и по окончании загрузки. Может быть null.
+     * @throws IOException если произошла ошибка ввода-вывода, файл поврежден или имеет неверный формат.
+     */
+    @Override
+    public void load(CollectionManager collectionManager, LongConsumer progressListener) throws IOException {
+        readPersons(collectionManager::addLoaded, progressListener);
+    }
+
+    /**
+     * Открывает двоичный файл через {@link FileChannel#map} и добавляет в менеджер коллекции
+     * ленивые элементы ({@link MappedPerson}) одной пачкой ({@link CollectionManager#addAllLoaded}).
+     * Заранее читается только столбец ID, а сами записи декодируются из отображенной памяти при первом обращении к полям.
+     * Контрольная сумма в этом режиме не проверяется, так как для этого пришлось бы прочитать весь файл.
+     * Отображение остается действительным и после перезаписи файла командой save,
+     * так как новый файл переименовывается поверх старого.
+     * @param collectionManager Менеджер коллекции, в который добавляются элементы.
+     * @throws IOException если файл не удалось отобразить или он имеет неверный формат.
+     */
+    public void loadMapped(CollectionManager collectionManager) throws IOException {
+        File file = new File(filePath);
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        MappedSnapshot snapshot = MappedSnapshot.open(file.toPath());
+        long recordCount = snapshot.getRecordCount();
+        List<Person> persons = new ArrayList<>((int) Math.min(recordCount, Integer.MAX_VALUE));
+        for (long index = 0; index < recordCount; index++) {
+            persons.add(new MappedPerson(snapshot, index, snapshot.getId(index)));
+        }
+        // Статистика и индексы по цвету строятся при первом запросе к ним, а не при загрузке
+        collectionManager.addAllLoaded(persons);
+    }
+
+    private void readPersons(Consumer<Person> sink, LongConsumer progressListener) throws IOException {
+        File file = new File(filePath);
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE), crc));
+
+            long recordCount = readHeader(in).recordCount;
+            int stringCount = in.readInt();
+            for (int i = 0; i < stringCount; i++) {
+                in.readLong(); // смещения нужны только для произвольного доступа
+            }
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            byte[] record = new byte[RECORD_SIZE];
+            ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+            IntFunction<String> stringTable = index -> index < 0 ? null : strings[index];
+            for (long i = 1; i <= recordCount; i++) {
+                in.readFully(record);
+                sink.accept(decode(recordBuffer, 0, stringTable));
+                if (progressListener != null && i % PROGRESS_STEP == 0) {
+                    progressListener.accept(i);
+                }
+            }
+
+            for (long i = 0; i < recordCount; i++) {
+                in.readLong(); // столбец ID дублирует ID из записей
+            }
+
+            int computed = (int) crc.getValue();
+            if (in.readInt() != computed) {
+                throw new IOException("Контрольная сумма файла " + filePath + " не совпадает, файл поврежден.");
+            }
+            if (progressListener != null) {
+                progressListener.accept(recordCount);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Файл " + filePath + " обрезан.", e);
+        }
+    }
+
+    /**
+     * Заголовок двоичного файла.
+     */
+    static final class Header {
+        final long recordCount;
+        final long recordsOffset;
+        final long idsOffset;
+
+        private Header(long recordCount, long recordsOffset, long idsOffset) {
+            this.recordCount = recordCount;
+            this.recordsOffset = recordsOffset;
+            this.idsOffset = idsOffset;
+        }
+    }
+
+    /**
+     * Читает и проверяет заголовок файла.
+     * @param in Поток, установленный на начало файла.
+     * @return Заголовок.
+     * @throws IOException если файл не является двоичным снимком поддерживаемой версии.
+     */
+    static Header readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Файл не является двоичным снимком коллекции.");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия двоичного формата: " + version);
+        }
+        in.readShort(); // флаги
+        return new Header(in.readLong(), in.readLong(), in.readLong());
+    }
+
+    /**
+     * Восстанавливает объект Person из записи фиксированной ширины.
+     * @param buffer Буфер с записью.
+     * @param base Смещение начала записи в буфере.
+     * @param strings Таблица строк по номеру (для -1 должна возвращать null).
+     * @return Восстановленный объект.
+     * @throws IOException если данные записи некорректны.
+     */
+    static Person decode(ByteBuffer buffer, int base, IntFunction<String> strings) throws IOException {
+        try {
+            int flags = buffer.get(base + OFFSET_FLAGS);
+            Person person = new Person();
+            person.setId(buffer.getLong(base + OFFSET_ID));
+            person.setName(strings.apply(buffer.getInt(base + OFFSET_NAME)));
+            if ((flags & FLAG_COORDINATES) != 0) {
+                person.setCoordinates(new Coordinates(buffer.getDouble(base + OFFSET_COORDINATES_X),
+                        buffer.getFloat(base + OFFSET_COORDINATES_Y)));
+            }
+            if ((flags & FLAG_CREATION_DATE) != 0) {
+                person.setCreationDate(LocalDateTime.ofEpochSecond(buffer.getLong(base + OFFSET_CREATION_SECOND),
+                        buffer.getInt(base + OFFSET_CREATION_NANO), ZoneOffset.UTC));
+            }
+            person.setHeight(buffer.getLong(base + OFFSET_HEIGHT));
+            person.setEyeColor(PersonCodec.color(buffer.get(base + OFFSET_EYE_COLOR)));
+            person.setHairColor(PersonCodec.color(buffer.get(base + OFFSET_HAIR_COLOR)));
+            person.setNationality(PersonCodec.country(buffer.get(base + OFFSET_NATIONALITY)));
+            if ((flags & FLAG_LOCATION) != 0) {
+                person.setLocation(new Location(buffer.getFloat(base + OFFSET_LOCATION_X),
+                        buffer.getDouble(base + OFFSET_LOCATION_Y),
+                        buffer.getDouble(base + OFFSET_LOCATION_Z),
+                        strings.apply(buffer.getInt(base + OFFSET_LOCATION_NAME))));
+            }
+            return person;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректные данные элемента: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Атомарно сохраняет коллекцию в двоичный файл.
+     * @param collection Коллекция для сохранения, упорядоченная по ID.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    @Override
+    public void save(Collection<Person> collection) throws IOException {
+        save(collection, false, null);
+    }
+
+    /**
+     * Атомарно сохраняет коллекцию в двоичный файл, сообщая о каждой записанной записи.
+     * Отступы в двоичном формате не используются, флаг игнорируется.
+     * @param collection Коллекция для сохранения, упорядоченная по ID.
+     * @param indent Не используется.
+     * @param progressListener Получает количество записанных элементов. Может быть null.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    @Override
+    public void save(Collection<Person> collection, boolean indent, LongConsumer progressListener) throws IOException {
+        AtomicFileWriter.<IOException>write(Paths.get(filePath), keepBackup,
+                channel -> writeBinary(collection, progressListener, channel));
+    }
+
+    private void writeBinary(Collection<Person> collection, LongConsumer progressListener, FileChannel channel) throws IOException {
+        // Первый проход собирает таблицу строк, чтобы она шла перед записями
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        for (Person element : collection) {
+            Person person = MappedPerson.unwrap(element);
+            intern(person.getName(), stringIndex, strings);
+            if (person.getLocation() != null) {
+                intern(person.getLocation().getName(), stringIndex, strings);
+            }
+        }
+
+        long position = HEADER_SIZE + Integer.BYTES + (long) Long.BYTES * strings.size();
+        long[] stringOffsets = new long[strings.size()];
+        for (int i = 0; i < strings.size(); i++) {
+            stringOffsets[i] = position;
+            position += Integer.BYTES + strings.get(i).length;
+        }
+        long recordsOffset = position;
+        long idsOffset = recordsOffset + (long) RECORD_SIZE * collection.size();
+
+        // Поток не закрывается: канал еще нужен для force(), его закроет AtomicFileWriter
+        OutputStream raw = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+        out.writeLong(collection.size());
+        out.writeLong(recordsOffset);
+        out.writeLong(idsOffset);
+
+        out.writeInt(strings.size());
+        for (long offset : stringOffsets) {
+            out.writeLong(offset);
+        }
+        for (byte[] bytes : strings) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        long written = 0;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (Person person : collection) {
+            writeRecord(out, record, MappedPerson.unwrap(person), stringIndex);
+            if (progressListener != null) {
+                progressListener.accept(++written);
+            }
+        }
+        for (Person person : collection) {
+            out.writeLong(person.getId());
+        }
+        out.flush();
+
+        new DataOutputStream(raw).writeInt((int) crc.getValue());
+        raw.flush();
+    }
+
+    private static void intern(String value, Map<String, Integer> stringIndex, List<byte[]> strings) {
+        if (value != null && !stringIndex.containsKey(value)) {
+            stringIndex.put(value, strings.size());
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int indexOf(String value, Map<String, Integer> stringIndex) {
+        return value == null ? -1 : stringIndex.get(value);
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteBuffer record, Person person, Map<String, Integer> stringIndex) throws IOException {
+        encode(record, 0, person, value -> indexOf(value, stringIndex));
+        out.write(record.array(), 0, RECORD_SIZE);
+    }
+
+    /**
+     * Записывает элемент в запись фиксированной ширины. Обратная операция - {@link #decode}.
+     * @param buffer Буфер для записи.
+     * @param base Смещение начала записи в буфере.
+     * @param person Элемент.
+     * @param strings Номер строки в таблице строк (для null должна возвращать -1).
+     */
+    static void encode(ByteBuffer buffer, int base, Person person, ToIntFunction<String> strings) {
+        Coordinates coordinates = person.getCoordinates();
+        LocalDateTime creationDate = person.getCreationDate();
+        Location location = person.getLocation();
+        int flags = (coordinates != null ? FLAG_COORDINATES : 0)
+                | (creationDate != null ? FLAG_CREATION_DATE : 0)
+                | (location != null ? FLAG_LOCATION : 0);
+
+        buffer.putLong(base + OFFSET_ID, person.getId());
+        buffer.putInt(base + OFFSET_NAME, strings.applyAsInt(person.getName()));
+        buffer.put(base + OFFSET_FLAGS, (byte) flags);
+        buffer.put(base + OFFSET_EYE_COLOR, (byte) PersonCodec.ordinal(person.getEyeColor()));
+        buffer.put(base + OFFSET_HAIR_COLOR, (byte) PersonCodec.ordinal(person.getHairColor()));
+        buffer.put(base + OFFSET_NATIONALITY, (byte) PersonCodec.ordinal(person.getNationality()));
+        buffer.putDouble(base + OFFSET_COORDINATES_X, coordinates != null ? coordinates.getX() : 0);
+        buffer.putFloat(base + OFFSET_COORDINATES_Y, coordinates != null ? coordinates.getY() : 0);
+        buffer.putFloat(base + OFFSET_LOCATION_X, location != null ? location.getX() : 0);
+        buffer.putLong(base + OFFSET_CREATION_SECOND, creationDate != null ? creationDate.toEpochSecond(ZoneOffset.UTC) : 0);
+        buffer.putInt(base + OFFSET_CREATION_NANO, creationDate != null ? creationDate.getNano() : 0);
+        buffer.putInt(base + OFFSET_LOCATION_NAME, location != null ? strings.applyAsInt(location.getName()) : -1);
+        buffer.putLong(base + OFFSET_HEIGHT, person.getHeight());
+        buffer.putDouble(base + OFFSET_LOCATION_Y, location != null ? location.getY() : 0);
+        buffer.putDouble(base + OFFSET_LOCATION_Z, location != null ? location.getZ() : 0);
+    }
+}
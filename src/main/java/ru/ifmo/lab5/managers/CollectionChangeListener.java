@@ -0,0 +1,54 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Person;
+
+/**
+ * Получает уведомления об изменениях коллекции от {@link CollectionManager}.
+ * Уведомление приходит до применения изменения, поэтому слушатель может отклонить его исключением.
+ * Дождаться сохранения изменения слушатель может в {@link #afterChange()}, когда оно уже видно в памяти.
+ */
+public interface CollectionChangeListener {
+    /**
+     * Вызывается перед добавлением элемента.
+     * @param person Добавляемый элемент с уже назначенными ID и датой создания.
+     */
+    void onAdd(Person person);
+
+    /**
+     * Вызывается перед заменой элемента.
+     * @param id ID обновляемого элемента.
+     * @param person Новые данные элемента с уже установленными ID и датой создания.
+     */
+    void onUpdate(long id, Person person);
+
+    /**
+     * Вызывается перед удалением элемента по ID.
+     * @param id ID удаляемого элемента.
+     */
+    void onRemoveById(long id);
+
+    /**
+     * Вызывается перед удалением всех элементов с ID больше заданного.
+     * @param id Эталонный ID.
+     */
+    void onRemoveGreater(long id);
+
+    /**
+     * Вызывается перед удалением всех элементов с ID меньше заданного.
+     * @param id Эталонный ID.
+     */
+    void onRemoveLower(long id);
+
+    /**
+     * Вызывается перед очисткой коллекции.
+     */
+    void onClear();
+
+    /**
+     * Вызывается в том же потоке после применения изменения и снятия блокировки записи коллекции.
+     * Здесь слушатель может дождаться, пока изменение из {@code on*} будет сохранено:
+     * ожидание вне блокировки не задерживает изменения из других потоков.
+     */
+    default void afterChange() {
+    }
+}
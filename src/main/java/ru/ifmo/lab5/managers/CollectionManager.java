@@ -1,36 +1,242 @@
 package ru.ifmo.lab5.managers;
 
+import ru.ifmo.lab5.model.Color;
 import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.QueryResult;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LongSummaryStatistics;
 import java.util.Objects;
 import java.util.TreeSet;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
 
 /**
  * Управляет коллекцией объектов Person.
+ * Элементы лежат в упорядоченном по ID хранилище {@link PersonStore}; помимо него менеджер поддерживает
+ * индексы по цвету волос и глаз и статистику роста, которые синхронизируются со всеми изменяющими коллекцию методами.
+ * После пакетной загрузки {@link #addAllLoaded} индексы строятся не сразу, а при первом запросе к ним.
+ * <p>
+ * Менеджер потокобезопасен. Все изменения выполняются под блокировкой записи {@link StampedLock} и потому
+ * упорядочены между собой; чтение счетчиков и статистики выполняется оптимистично, без блокировки,
+ * а обход и копирование коллекции - под блокировкой чтения. Если хранилище допускает параллельное чтение
+ * ({@link PersonStore#isConcurrent()}), поиск по ID и постраничный обход выполняются вовсе без блокировки.
+ * Сама коллекция наружу не выдается:
+ * вместо нее используются {@link #snapshot()}, {@link #forEach}, {@link #page} и {@link #pageFromId}.
  */
 public class CollectionManager {
-    private TreeSet<Person> collection = new TreeSet<>();
+    /** Начальная емкость списка для страницы: ограничивает выделение памяти при больших limit. */
+    private static final int BATCH_CAPACITY = 1024;
+    /** Размер коллекции, начиная с которого полный проход выполняется параллельно (если задан пул). */
+    static final int PARALLEL_SCAN_THRESHOLD = 1 << 14;
+
+    private final StampedLock lock = new StampedLock();
+    private final AtomicInteger waitingWriters = new AtomicInteger();
+    /** Охраняет ожидание новых читателей, пока есть ожидающие писатели. */
+    private final ReentrantLock writerGate = new ReentrantLock();
+    private final Condition writersGone = writerGate.newCondition();
+    /** Число вложенных захватов блокировки чтения текущим потоком. */
+    private final ThreadLocal<int[]> readHolds = ThreadLocal.withInitial(() -> new int[1]);
+    private final PersonStore store;
+    private final HeightStatistics heightStatistics = new HeightStatistics();
+    private final ColorIndex hairColorIndex;
+    private final ColorIndex eyeColorIndex;
+    /** Количество элементов; ведется всегда, в том числе пока индексы не построены. */
+    private long elementCount;
+    /**
+     * true, если статистика роста и индексы по цвету не построены (после {@link #addAllLoaded}).
+     * Тогда изменения поддерживают только {@link #elementCount}, а индексы строятся по хранилищу при первом запросе.
+     */
+    private volatile boolean indexesStale;
+    private final List<CollectionChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private final ZonedDateTime initializationTime;
     private long nextId = 1;
+    private volatile boolean verifyAggregates;
+    private volatile ParallelismManager parallelismManager;
+    /** Счетчик изменений коллекции, увеличивается под блокировкой записи. */
+    private volatile long modificationCount;
+    /** Значение счетчика изменений, попавшее в последний сохраненный снимок. */
+    private volatile long savedModificationCount;
 
     /**
-     * Конструктор, инициализирует время создания коллекции.
+     * Конструктор менеджера с хранилищем на {@link TreeSet}, инициализирует время создания коллекции.
      */
     public CollectionManager() {
+        this(new TreeSetPersonStore());
+    }
+
+    /**
+     * Конструктор, инициализирует время создания коллекции.
+     * @param store Пустое хранилище элементов.
+     */
+    public CollectionManager(PersonStore store) {
+        this.store = store;
+        // Хранилищу без объектов Person индексы нужны только для подсчета, иначе они держали бы копию каждого элемента
+        this.hairColorIndex = new ColorIndex(Person::getHairColor, store.retainsElements());
+        this.eyeColorIndex = new ColorIndex(Person::getEyeColor, store.retainsElements());
         this.initializationTime = ZonedDateTime.now();
     }
 
     /**
-     * Возвращает коллекцию.
-     * @return Коллекция Person.
+     * Подписывает слушателя на изменения коллекции.
+     * Загрузка через {@link #setCollection}, {@link #addLoaded} и {@link #addAllLoaded} слушателям не сообщается.
+     * Слушатели вызываются под блокировкой записи и не должны обращаться к менеджеру;
+     * {@link CollectionChangeListener#afterChange()} вызывается уже после ее снятия.
+     * @param listener Слушатель изменений.
+     */
+    public void addChangeListener(CollectionChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Возвращает счетчик изменений коллекции. Счетчик увеличивается каждым методом,
+     * который действительно изменил коллекцию, в том числе загрузкой и воспроизведением журнала.
+     * @return Количество изменений с момента создания менеджера.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Отмечает, что состояние коллекции с указанным значением счетчика изменений сохранено в файл.
+     * @param modificationCount Значение {@link #getModificationCount()}, взятое вместе с сохраненным снимком.
+     */
+    public void markSaved(long modificationCount) {
+        savedModificationCount = modificationCount;
+    }
+
+    /**
+     * Возвращает количество изменений, сделанных после последнего сохранения.
+     * @return Количество несохраненных изменений, 0 - файл соответствует коллекции.
      */
-    public TreeSet<Person> getCollection() {
-        return collection;
+    public long getUnsavedChanges() {
+        return modificationCount - savedModificationCount;
+    }
+
+    /**
+     * Включает режим отладки, в котором накопленная статистика при каждом запросе
+     * сверяется с результатом полного пересчета по коллекции.
+     * @param verifyAggregates true, чтобы включить сверку.
+     */
+    public void setVerifyAggregates(boolean verifyAggregates) {
+        this.verifyAggregates = verifyAggregates;
+    }
+
+    /**
+     * Возвращает количество элементов коллекции без блокировки.
+     * @return Размер коллекции.
+     */
+    public int size() {
+        // Размер ведет сам менеджер: у некоторых хранилищ size() обходит все элементы
+        return (int) optimisticRead(() -> elementCount);
+    }
+
+    /**
+     * Проверяет, пуста ли коллекция.
+     * @return true, если в коллекции нет элементов.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Возвращает согласованную копию коллекции, не связанную с менеджером.
+     * Копия строится из упорядоченной коллекции за линейное время.
+     * @return Новый TreeSet с текущими элементами.
+     */
+    public TreeSet<Person> snapshot() {
+        return snapshot(() -> {});
+    }
+
+    /**
+     * Возвращает согласованную копию коллекции и выполняет действие в тот же момент, под той же блокировкой чтения.
+     * Так, например, вместе со снимком берется отметка журнала изменений: ни одно изменение не может
+     * оказаться между ними. Элементы при изменении заменяются, а не правятся на месте,
+     * поэтому копирования ссылок достаточно, чтобы снимок не менялся дальше.
+     * @param atSnapshot Короткое действие, выполняемое вместе со снимком.
+     * @return Новый TreeSet с текущими элементами.
+     */
+    public TreeSet<Person> snapshot(Runnable atSnapshot) {
+        long stamp = readLock();
+        try {
+            atSnapshot.run();
+            return store.snapshot();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Обходит элементы коллекции по возрастанию ID.
+     * Обычно обход идет под блокировкой чтения: изменения коллекции ждут, поэтому действие должно быть коротким.
+     * Действие может вызывать читающие методы менеджера, но не изменяющие: они завершатся
+     * {@link IllegalStateException}. Для параллельного хранилища обход без блокировки и слабо согласован.
+     * @param action Действие для каждого элемента.
+     */
+    public void forEach(Consumer<? super Person> action) {
+        // Отложенные индексы нельзя построить из действия: для этого нужна блокировка записи
+        ensureIndexes();
+        read(() -> {
+            store.iteratorFrom(0).forEachRemaining(action);
+            return null;
+        });
+    }
+
+    /**
+     * Возвращает страницу коллекции по смещению в порядке возрастания ID.
+     * @param offset Количество пропускаемых первых элементов.
+     * @param limit Максимальный размер страницы.
+     * @return Копия элементов страницы.
+     */
+    public List<Person> page(long offset, int limit) {
+        return read(() -> {
+            List<Person> page = new ArrayList<>(Math.min(limit, BATCH_CAPACITY));
+            Iterator<Person> iterator = store.iteratorFrom(0);
+            for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            while (iterator.hasNext() && page.size() < limit) {
+                page.add(iterator.next());
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Возвращает страницу коллекции, начиная с элемента с указанным ID (включительно), в порядке возрастания ID.
+     * Начало страницы находится за O(log n).
+     * @param id ID, с которого начинается страница. Если элемента с таким ID нет, страница начинается со следующего.
+     * @param limit Максимальный размер страницы.
+     * @return Копия элементов страницы.
+     */
+    public List<Person> pageFromId(long id, int limit) {
+        return read(() -> {
+            List<Person> page = new ArrayList<>(Math.min(limit, BATCH_CAPACITY));
+            Iterator<Person> iterator = store.iteratorFrom(id);
+            while (iterator.hasNext() && page.size() < limit) {
+                page.add(iterator.next());
+            }
+            return page;
+        });
     }
 
     /**
@@ -39,16 +245,91 @@ public class CollectionManager {
      * @param loadedCollection Новая коллекция.
      */
     public void setCollection(TreeSet<Person> loadedCollection) {
-        this.collection = Objects.requireNonNullElse(loadedCollection, new TreeSet<>());
-        updateNextId();
+        long stamp = writeLock();
+        try {
+            store.replaceAll(Objects.requireNonNullElse(loadedCollection, new TreeSet<>()));
+            rebuildIndexes();
+            updateNextId();
+            modificationCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    private void updateNextId() {
-        if (collection == null || collection.isEmpty()) {
-            nextId = 1;
-        } else {
-            nextId = collection.stream().mapToLong(Person::getId).max().orElse(0L) + 1;
+    /**
+     * Устанавливает коллекцию, для которой максимальный ID уже известен загрузчику.
+     * @param loadedCollection Новая коллекция.
+     * @param maxId Максимальный ID среди элементов коллекции (0 для пустой).
+     */
+    public void setCollection(TreeSet<Person> loadedCollection, long maxId) {
+        long stamp = writeLock();
+        try {
+            store.replaceAll(Objects.requireNonNullElse(loadedCollection, new TreeSet<>()));
+            rebuildIndexes();
+            nextId = maxId + 1;
+            modificationCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void rebuildIndexes() {
+        indexesStale = false;
+        elementCount = 0;
+        heightStatistics.clear();
+        hairColorIndex.clear();
+        eyeColorIndex.clear();
+        store.iteratorFrom(0).forEachRemaining(this::index);
+    }
+
+    /**
+     * Строит статистику и индексы по цвету, если они были отложены загрузкой {@link #addAllLoaded}.
+     * Вызывается без блокировки, до захвата блокировки чтения: {@link StampedLock} не реентерабелен.
+     */
+    private void ensureIndexes() {
+        if (!indexesStale) {
+            return;
+        }
+        long stamp = writeLock();
+        try {
+            if (indexesStale) {
+                rebuildIndexes();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Учитывает элемент, уже добавленный в хранилище, в индексах и статистике.
+     */
+    private void index(Person person) {
+        elementCount++;
+        if (indexesStale) {
+            return;
         }
+        heightStatistics.add(person.getHeight());
+        hairColorIndex.add(person);
+        eyeColorIndex.add(person);
+    }
+
+    /**
+     * Исключает элемент из индексов и статистики.
+     */
+    private void unindex(Person person) {
+        elementCount--;
+        if (indexesStale) {
+            return;
+        }
+        heightStatistics.remove(person.getHeight());
+        hairColorIndex.remove(person);
+        eyeColorIndex.remove(person);
+    }
+
+    private void updateNextId() {
+        // Хранилище упорядочено по ID, поэтому максимальный ID у последнего элемента
+        Person last = store.last();
+        nextId = last == null ? 1 : last.getId() + 1;
     }
 
     /**
@@ -57,40 +338,144 @@ public class CollectionManager {
      * @param person Новый человек для добавления (ID и дата создания будут перезаписаны).
      */
     public void add(Person person) {
-        person.setId(nextId++);
+        long stamp = writeLock();
+        try {
+            addUnlocked(person);
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
+        }
+    }
+
+    /**
+     * Дает слушателям дождаться сохранения изменения. Вызывается после снятия блокировки записи.
+     */
+    private void afterChange() {
+        for (CollectionChangeListener listener : changeListeners) {
+            listener.afterChange();
+        }
+    }
+
+    private void addUnlocked(Person person) {
+        person.setId(nextId);
         person.setCreationDate(LocalDateTime.now());
-        collection.add(person);
+        for (CollectionChangeListener listener : changeListeners) {
+            listener.onAdd(person);
+        }
+        // ID считается занятым только после записи в журнал: при ошибке слушателя он достанется следующему элементу
+        nextId++;
+        store.add(person);
+        index(person);
+        modificationCount++;
+    }
+
+    /**
+     * Добавляет элемент, прочитанный из хранилища, сохраняя его ID и дату создания.
+     * Счетчик nextId продвигается по мере добавления, поэтому после загрузки пересчет не нужен.
+     * @param person Загруженный человек.
+     * @return true, если элемент добавлен, и false, если элемент с таким ID уже есть.
+     */
+    public boolean addLoaded(Person person) {
+        long stamp = writeLock();
+        try {
+            if (!store.add(person)) {
+                return false;
+            }
+            index(person);
+            if (person.getId() >= nextId) {
+                nextId = person.getId() + 1;
+            }
+            modificationCount++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Добавляет пачку элементов, прочитанных из хранилища, под одной блокировкой записи.
+     * У элементов читается только ID: статистика роста и индексы по цвету не обновляются, а строятся
+     * одним проходом по хранилищу при первом запросе, которому они нужны (агрегаты, подсчет по цвету, info).
+     * Так загрузка ленивых элементов не обращается к их полям.
+     * @param persons Загруженные элементы; элементы с уже занятым ID пропускаются.
+     * @return Количество добавленных элементов.
+     */
+    public int addAllLoaded(Iterable<? extends Person> persons) {
+        long stamp = writeLock();
+        try {
+            int added = 0;
+            for (Person person : persons) {
+                if (!store.add(person)) {
+                    continue;
+                }
+                indexesStale = true;
+                elementCount++;
+                if (person.getId() >= nextId) {
+                    nextId = person.getId() + 1;
+                }
+                added++;
+            }
+            if (added > 0) {
+                modificationCount++;
+            }
+            return added;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     /**
      * Добавляет элемент в коллекцию, если он больше максимального.
-     * Сравнение происходит по естественному порядку (ID).
+     * Сравнение происходит по естественному порядку (ID). Проверка и добавление выполняются атомарно.
      * @param person Человек для добавления.
      * @return true, если элемент добавлен, иначе false.
      */
     public boolean addIfMax(Person person) {
-        if (collection.isEmpty() || person.compareTo(collection.last()) > 0) {
-            add(person);
-            return true;
+        long stamp = writeLock();
+        try {
+            Person last = store.last();
+            if (last == null || person.compareTo(last) > 0) {
+                addUnlocked(person);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
         }
-        return false;
     }
 
     /**
      * Добавляет элемент в коллекцию, если он меньше минимального.
-     * Сравнение происходит по естественному порядку (ID).
+     * Сравнение происходит по естественному порядку (ID). Проверка и добавление выполняются атомарно.
      * @param person Человек для добавления.
      * @return true, если элемент добавлен, иначе false.
      */
     public boolean addIfMin(Person person) {
-        if (collection.isEmpty() || person.compareTo(collection.first()) < 0) {
-            add(person);
-            return true;
+        long stamp = writeLock();
+        try {
+            Person first = store.first();
+            if (first == null || person.compareTo(first) < 0) {
+                addUnlocked(person);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
         }
-        return false;
     }
 
 
+    /**
+     * Ищет элемент коллекции по ID с помощью индекса, без обхода всей коллекции.
+     * @param id ID искомого элемента.
+     * @return Найденный элемент или пустой Optional, если элемента с таким ID нет.
+     */
+    public Optional<Person> findById(long id) {
+        return read(() -> Optional.ofNullable(store.get(id)));
+    }
+
     /**
      * Обновляет элемент коллекции с указанным ID.
      * @param id ID элемента для обновления.
@@ -98,19 +483,29 @@ public class CollectionManager {
      * @return true, если элемент найден и обновлен, иначе false.
      */
     public boolean update(long id, Person updatedPersonData) {
-        Optional<Person> personOptional = collection.stream().filter(p -> p.getId() == id).findFirst();
-        if (personOptional.isPresent()) {
-            Person personToUpdate = personOptional.get();
-            LocalDateTime originalCreationDate = personToUpdate.getCreationDate();
+        long stamp = writeLock();
+        try {
+            Person personToUpdate = store.get(id);
+            if (personToUpdate != null) {
+                LocalDateTime originalCreationDate = personToUpdate.getCreationDate();
 
-            collection.remove(personToUpdate);
+                updatedPersonData.setId(id);
+                updatedPersonData.setCreationDate(originalCreationDate);
+                for (CollectionChangeListener listener : changeListeners) {
+                    listener.onUpdate(id, updatedPersonData);
+                }
 
-            updatedPersonData.setId(id);
-            updatedPersonData.setCreationDate(originalCreationDate);
-            collection.add(updatedPersonData);
-            return true;
+                store.replace(updatedPersonData);
+                unindex(personToUpdate);
+                index(updatedPersonData);
+                modificationCount++;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
         }
-        return false;
     }
 
     /**
@@ -119,31 +514,112 @@ public class CollectionManager {
      * @return true, если элемент найден и удален, иначе false.
      */
     public boolean removeById(long id) {
-        return collection.removeIf(person -> person.getId() == id);
+        long stamp = writeLock();
+        try {
+            Person removed = store.get(id);
+            if (removed == null) {
+                return false;
+            }
+            for (CollectionChangeListener listener : changeListeners) {
+                listener.onRemoveById(id);
+            }
+            store.remove(id);
+            unindex(removed);
+            modificationCount++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
+        }
     }
 
     /**
-     * Очищает коллекцию.
+     * Очищает коллекцию. Слушатели уведомляются, только если коллекция не пуста.
      */
     public void clear() {
-        collection.clear();
-        nextId = 1;
+        long stamp = writeLock();
+        try {
+            if (elementCount > 0) {
+                for (CollectionChangeListener listener : changeListeners) {
+                    listener.onClear();
+                }
+                modificationCount++;
+            }
+            store.clear();
+            indexesStale = false;
+            elementCount = 0;
+            heightStatistics.clear();
+            hairColorIndex.clear();
+            eyeColorIndex.clear();
+            nextId = 1;
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
+        }
     }
 
     /**
      * Удаляет все элементы, которые больше указанного (сравнение по ID).
+     * Хранилище удаляет диапазон по ID, поэтому сравниваются только удаляемые элементы.
+     * Если элементов с ID больше указанного нет, слушатели не уведомляются.
      * @param person Эталонный элемент (используется только его ID для сравнения).
+     * @return Количество удаленных элементов.
      */
-    public void removeGreater(Person person) {
-        collection.removeIf(p -> p.compareTo(person) > 0);
+    public int removeGreater(Person person) {
+        long stamp = writeLock();
+        try {
+            Person last = store.last();
+            if (last == null || last.getId() <= person.getId()) {
+                return 0;
+            }
+            for (CollectionChangeListener listener : changeListeners) {
+                listener.onRemoveGreater(person.getId());
+            }
+            return unindexAll(store.removeGreater(person.getId()));
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
+        }
     }
 
     /**
      * Удаляет все элементы, которые меньше указанного (сравнение по ID).
+     * Хранилище удаляет диапазон по ID, поэтому сравниваются только удаляемые элементы.
+     * Если элементов с ID меньше указанного нет, слушатели не уведомляются.
      * @param person Эталонный элемент (используется только его ID для сравнения).
+     * @return Количество удаленных элементов.
+     */
+    public int removeLower(Person person) {
+        long stamp = writeLock();
+        try {
+            Person first = store.first();
+            if (first == null || first.getId() >= person.getId()) {
+                return 0;
+            }
+            for (CollectionChangeListener listener : changeListeners) {
+                listener.onRemoveLower(person.getId());
+            }
+            return unindexAll(store.removeLower(person.getId()));
+        } finally {
+            lock.unlockWrite(stamp);
+            afterChange();
+        }
+    }
+
+    /**
+     * Исключает удаленные из хранилища элементы из индексов и статистики.
+     * Вызывается под блокировкой записи.
+     * @param removed Удаленные элементы.
+     * @return Количество удаленных элементов.
      */
-    public void removeLower(Person person) {
-        collection.removeIf(p -> p.compareTo(person) < 0);
+    private int unindexAll(List<Person> removed) {
+        for (Person p : removed) {
+            unindex(p);
+        }
+        if (!removed.isEmpty()) {
+            modificationCount++;
+        }
+        return removed.size();
     }
 
     /**
@@ -151,59 +627,349 @@ public class CollectionManager {
      * @return Строка с информацией.
      */
     public String getInfo() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM);
-
-        return "Тип коллекции: " + collection.getClass().getName() +
-                "\nДата инициализации: " + initializationTime.format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss z")) +
-                "\nКоличество элементов: " + collection.size();
+        ensureIndexes();
+        long stamp = readLock();
+        try {
+            checkAggregates();
+            StringBuilder info = new StringBuilder()
+                    .append("Тип коллекции: ").append(store.getTypeName())
+                    .append("\nДата инициализации: ").append(initializationTime.format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss z")))
+                    .append("\nКоличество элементов: ").append(elementCount)
+                    .append("\nНесохраненных изменений: ").append(getUnsavedChanges());
+            if (heightStatistics.getCount() > 0) {
+                info.append("\nРост: минимальный ").append(heightStatistics.getMin().getAsLong())
+                        .append(", максимальный ").append(heightStatistics.getMax().getAsLong())
+                        .append(", средний ").append(String.format("%.2f", heightStatistics.getAverage()));
+            }
+            return info.toString();
+        } finally {
+            unlockRead(stamp);
+        }
     }
 
     /**
      * Возвращает средний рост всех людей в коллекции.
+     * Значение берется из накопленной статистики без блокировки, обхода коллекции не требуется.
      * @return Средний рост или 0, если коллекция пуста.
      */
     public double getAverageHeight() {
-        if (collection.isEmpty()) {
+        ensureIndexes();
+        verifyIfEnabled();
+        long stamp = lock.tryOptimisticRead();
+        double average = heightStatistics.getAverage();
+        if (!lock.validate(stamp)) {
+            stamp = readLock();
+            try {
+                average = heightStatistics.getAverage();
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        return average;
+    }
+
+    /**
+     * Возвращает минимальный рост в коллекции.
+     * @return Минимальный рост или пустой OptionalLong, если коллекция пуста.
+     */
+    public OptionalLong getMinHeight() {
+        ensureIndexes();
+        long stamp = readLock();
+        try {
+            checkAggregates();
+            return heightStatistics.getMin();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает максимальный рост в коллекции.
+     * @return Максимальный рост или пустой OptionalLong, если коллекция пуста.
+     */
+    public OptionalLong getMaxHeight() {
+        ensureIndexes();
+        long stamp = readLock();
+        try {
+            checkAggregates();
+            return heightStatistics.getMax();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает сумму роста всех людей в коллекции из накопленной статистики.
+     * @return Точная сумма роста (0 для пустой коллекции).
+     */
+    public BigInteger getHeightSum() {
+        ensureIndexes();
+        long stamp = readLock();
+        try {
+            checkAggregates();
+            return heightStatistics.getSum();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Копирует значения целочисленного поля всех элементов в массив.
+     * Под блокировкой выполняется только копирование; вычисления над массивом идут уже без нее.
+     * @param field Целочисленное поле.
+     * @return Значения поля по возрастанию ID.
+     */
+    public long[] longColumn(NumericField field) {
+        return read(() -> scan(() -> store.longColumn(field),
+                () -> StreamSupport.stream(store.spliterator(), true).mapToLong(field::longValue).toArray()));
+    }
+
+    /**
+     * Копирует значения поля всех элементов, у которых оно есть, в массив.
+     * @param field Поле.
+     * @return Значения поля по возрастанию ID.
+     */
+    public double[] doubleColumn(NumericField field) {
+        return read(() -> scan(() -> store.doubleColumn(field),
+                () -> StreamSupport.stream(store.spliterator(), true)
+                        .filter(field::isPresent).mapToDouble(field::doubleValue).toArray()));
+    }
+
+    /**
+     * Устанавливает пул для параллельных проходов по коллекции.
+     * @param parallelismManager Менеджер параллелизма или null, чтобы проходить коллекцию в вызывающем потоке.
+     */
+    public void setParallelismManager(ParallelismManager parallelismManager) {
+        this.parallelismManager = parallelismManager;
+    }
+
+    /**
+     * @return Менеджер параллелизма или null, если он не установлен.
+     */
+    public ParallelismManager getParallelismManager() {
+        return parallelismManager;
+    }
+
+    /**
+     * @return Пул для параллельных вычислений над коллекцией или null, если они выполняются последовательно.
+     */
+    public ForkJoinPool getScanPool() {
+        ParallelismManager manager = parallelismManager;
+        return manager == null ? null : manager.getPool();
+    }
+
+    /**
+     * Выполняет полный проход по хранилищу. Если задан пул, коллекция больше {@value #PARALLEL_SCAN_THRESHOLD}
+     * элементов, а хранилище держит объекты (и проход упирается в обход структуры, а не в копирование столбца),
+     * проход делится сплитератором хранилища и выполняется параллельным потоком в пуле.
+     * Порядок результата в обоих случаях - по возрастанию ID. Вызывается внутри {@link #read}.
+     */
+    private <T> T scan(Supplier<T> sequential, Supplier<T> parallel) {
+        ForkJoinPool pool = getScanPool();
+        // Размер берется из счетчика менеджера за O(1): у SkipListPersonStore size() обходит все элементы
+        if (pool == null || !store.retainsElements() || size() <= PARALLEL_SCAN_THRESHOLD) {
+            return sequential.get();
+        }
+        try {
+            // Параллельный поток, запущенный из задачи пула, выполняется в этом пуле, а не в общем
+            return pool.submit(parallel::get).join();
+        } catch (RejectedExecutionException e) {
+            // Пул завершен сменой параллелизма
+            return sequential.get();
+        }
+    }
+
+    /**
+     * Выполняет чтение хранилища: без блокировки, если хранилище допускает параллельное чтение,
+     * иначе под блокировкой чтения.
+     */
+    private <T> T read(Supplier<T> reader) {
+        if (store.isConcurrent()) {
+            return reader.get();
+        }
+        long stamp = readLock();
+        try {
+            return reader.get();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Захватывает блокировку чтения. Пока есть ожидающие писатели, новые читатели ждут их:
+     * {@link StampedLock} не отдает предпочтения записи, и непрерывный поток пересекающихся чтений
+     * иначе может бесконечно откладывать изменения.
+     * <p>
+     * {@link StampedLock} не реентерабелен, и повторный захват чтения при ожидающем писателе
+     * заблокировал бы поток навсегда. Поэтому поток, уже держащий блокировку чтения (например, вызов
+     * {@link #findById} из действия {@link #forEach}), не захватывает ее повторно, а пользуется внешним захватом.
+     * @return Штамп для {@link #unlockRead(long)}; 0 для вложенного захвата.
+     */
+    private long readLock() {
+        int[] holds = readHolds.get();
+        if (holds[0] > 0) {
+            holds[0]++;
             return 0;
         }
-        return collection.stream()
-                .mapToLong(Person::getHeight)
-                .average()
-                .orElse(0.0);
+        if (waitingWriters.get() > 0) {
+            writerGate.lock();
+            try {
+                while (waitingWriters.get() > 0) {
+                    writersGone.awaitUninterruptibly();
+                }
+            } finally {
+                writerGate.unlock();
+            }
+        }
+        long stamp = lock.readLock();
+        holds[0] = 1;
+        return stamp;
+    }
+
+    /**
+     * Снимает захват блокировки чтения, полученный {@link #readLock()}.
+     * @param stamp Штамп захвата.
+     */
+    private void unlockRead(long stamp) {
+        readHolds.get()[0]--;
+        if (stamp != 0) {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Захватывает блокировку записи, предварительно останавливая вход новых читателей.
+     * @throws IllegalStateException если текущий поток держит блокировку чтения, то есть коллекция
+     *                               изменяется из действия, выполняемого под ней: ожидание записи не закончилось бы никогда.
+     */
+    private long writeLock() {
+        if (readHolds.get()[0] > 0) {
+            throw new IllegalStateException("Коллекцию нельзя изменять во время ее обхода");
+        }
+        waitingWriters.incrementAndGet();
+        try {
+            return lock.writeLock();
+        } finally {
+            if (waitingWriters.decrementAndGet() == 0) {
+                writerGate.lock();
+                try {
+                    writersGone.signalAll();
+                } finally {
+                    writerGate.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Читает значение без блокировки и перечитывает его под блокировкой чтения, если параллельно прошла запись.
+     * Подходит только для чтения полей, которое не может завершиться ошибкой на несогласованных данных.
+     */
+    private long optimisticRead(LongSupplier reader) {
+        long stamp = lock.tryOptimisticRead();
+        long value = reader.getAsLong();
+        if (!lock.validate(stamp)) {
+            stamp = readLock();
+            try {
+                value = reader.getAsLong();
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        return value;
     }
 
     /**
-     * Подсчитывает количество людей с указанным цветом волос.
+     * В режиме отладки выполняет {@link #checkAggregates()} под блокировкой чтения.
+     */
+    private void verifyIfEnabled() {
+        if (!verifyAggregates) {
+            return;
+        }
+        long stamp = readLock();
+        try {
+            checkAggregates();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * В режиме отладки сверяет накопленную статистику и размеры индексов по цвету с полным пересчетом.
+     * Вызывается под блокировкой.
+     * @throws IllegalStateException если статистика разошлась с содержимым коллекции.
+     */
+    private void checkAggregates() {
+        if (!verifyAggregates) {
+            return;
+        }
+        LongSummaryStatistics expected = new LongSummaryStatistics();
+        BigInteger sum = BigInteger.ZERO;
+        for (Iterator<Person> iterator = store.iteratorFrom(0); iterator.hasNext(); ) {
+            Person person = iterator.next();
+            expected.accept(person.getHeight());
+            sum = sum.add(BigInteger.valueOf(person.getHeight()));
+        }
+        double expectedAverage = expected.getCount() == 0 ? 0 : new BigDecimal(sum)
+                .divide(BigDecimal.valueOf(expected.getCount()), MathContext.DECIMAL64).doubleValue();
+        boolean consistent = heightStatistics.getCount() == expected.getCount() && elementCount == expected.getCount()
+                && hairColorIndex.size() == expected.getCount() && eyeColorIndex.size() == expected.getCount()
+                && Math.abs(heightStatistics.getAverage() - expectedAverage) <= Math.ulp(expectedAverage) * 4
+                && (expected.getCount() == 0 || heightStatistics.getMin().getAsLong() == expected.getMin()
+                        && heightStatistics.getMax().getAsLong() == expected.getMax());
+        if (!consistent) {
+            throw new IllegalStateException("Статистика разошлась с коллекцией из " + expected.getCount()
+                    + " элементов: ожидалось " + expected
+                    + ", накоплено count=" + heightStatistics.getCount() + ", average=" + heightStatistics.getAverage()
+                    + ", min=" + heightStatistics.getMin() + ", max=" + heightStatistics.getMax());
+        }
+    }
+
+    /**
+     * Подсчитывает количество людей с указанным цветом волос по индексу, без обхода коллекции и без блокировки.
      * @param hairColorCriteria Цвет волос для подсчета (может быть null).
      * @return Количество людей.
      */
-    public long countByHairColor(ru.ifmo.lab5.model.Color hairColorCriteria) {
-        if (hairColorCriteria == null) {
-            return collection.stream()
-                    .filter(p -> p.getHairColor() == null)
-                    .count();
-        } else {
-            return collection.stream()
-                    .filter(p -> hairColorCriteria.equals(p.getHairColor()))
-                    .count();
-        }
+    public long countByHairColor(Color hairColorCriteria) {
+        ensureIndexes();
+        verifyIfEnabled();
+        return optimisticRead(() -> hairColorIndex.count(hairColorCriteria));
+    }
+
+    /**
+     * Подсчитывает количество людей с указанным цветом глаз по индексу, без обхода коллекции и без блокировки.
+     * @param eyeColorCriteria Цвет глаз для подсчета (может быть null).
+     * @return Количество людей.
+     */
+    public long countByEyeColor(Color eyeColorCriteria) {
+        ensureIndexes();
+        verifyIfEnabled();
+        return optimisticRead(() -> eyeColorIndex.count(eyeColorCriteria));
     }
 
     /**
      * Фильтрует людей, у которых цвет волос "меньше" указанного.
      * Сравнение происходит по порядку объявления в Enum.
-     * @param hairColor Эталонный цвет волос. Если null, возвращает пустой сет.
-     * @return Отфильтрованный TreeSet.
+     * Результат ленивый: элементы берутся слиянием корзин индекса для меньших цветов, уже упорядоченных по ID,
+     * только при чтении результата и никуда не копируются. Остальные элементы коллекции не просматриваются.
+     * Если хранилище не держит объекты Person, индекс хранит только количества, и элементы отбирает само хранилище.
+     * Чтение результата выполняется под блокировкой чтения.
+     * @param hairColor Эталонный цвет волос. Если null, возвращает пустой результат.
+     * @return Результат запроса.
      */
-    public TreeSet<Person> filterLessThanHairColor(ru.ifmo.lab5.model.Color hairColor) {
-        TreeSet<Person> filteredSet = new TreeSet<>();
-        if (hairColor == null) return filteredSet;
-
-        for (Person person : collection) {
-            if (person.getHairColor() != null && person.getHairColor().ordinal() < hairColor.ordinal()) {
-                filteredSet.add(person);
+    public QueryResult<Person> filterLessThanHairColor(Color hairColor) {
+        if (hairColor == null) return QueryResult.empty();
+        return QueryResult.of(action -> {
+            ensureIndexes();
+            long stamp = readLock();
+            try {
+                Iterator<Person> matches = hairColorIndex.keepsElements()
+                        ? hairColorIndex.lessThan(hairColor)
+                        : store.iteratorHairColorLessThan(hairColor);
+                matches.forEachRemaining(action);
+            } finally {
+                unlockRead(stamp);
             }
-        }
-        return filteredSet;
+        });
     }
-}
\ No newline at end of file
+}
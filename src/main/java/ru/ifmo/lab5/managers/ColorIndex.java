@@ -0,0 +1,132 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.MergingIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Вторичный индекс коллекции по полю цвета.
+ * Для каждого значения {@link Color} и отдельно для null хранит упорядоченное по ID множество элементов,
+ * поэтому количество элементов с заданным цветом известно сразу, а выборка по диапазону цветов
+ * сводится к слиянию нескольких уже упорядоченных корзин.
+ * Индекс без элементов хранит только количества: он нужен хранилищам, которые не держат объекты Person
+ * (см. {@link PersonStore#retainsElements()}), иначе индекс держал бы собранную копию каждого элемента.
+ */
+final class ColorIndex {
+    private static final Color[] COLORS = Color.values();
+
+    private final Function<Person, Color> key;
+    private final boolean keepElements;
+    private final EnumMap<Color, TreeSet<Person>> buckets = new EnumMap<>(Color.class);
+    private final TreeSet<Person> nullBucket = new TreeSet<>();
+    /** Количества по порядковому номеру цвета, последняя ячейка - для null. Ведутся, только если элементы не хранятся. */
+    private final int[] counts = new int[COLORS.length + 1];
+
+    /**
+     * @param key Поле, по которому строится индекс (например, {@code Person::getHairColor}).
+     */
+    ColorIndex(Function<Person, Color> key) {
+        this(key, true);
+    }
+
+    /**
+     * @param key Поле, по которому строится индекс (например, {@code Person::getHairColor}).
+     * @param keepElements false, чтобы хранить только количества; тогда {@link #lessThan} недоступен.
+     */
+    ColorIndex(Function<Person, Color> key, boolean keepElements) {
+        this.key = key;
+        this.keepElements = keepElements;
+        for (Color color : COLORS) {
+            buckets.put(color, new TreeSet<>());
+        }
+    }
+
+    /**
+     * @return true, если индекс хранит элементы и поддерживает {@link #lessThan}.
+     */
+    boolean keepsElements() {
+        return keepElements;
+    }
+
+    void add(Person person) {
+        if (keepElements) {
+            bucket(key.apply(person)).add(person);
+        } else {
+            counts[slot(key.apply(person))]++;
+        }
+    }
+
+    void remove(Person person) {
+        if (keepElements) {
+            bucket(key.apply(person)).remove(person);
+        } else {
+            counts[slot(key.apply(person))]--;
+        }
+    }
+
+    void clear() {
+        buckets.values().forEach(TreeSet::clear);
+        nullBucket.clear();
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * @param color Цвет или null.
+     * @return Количество элементов с таким значением поля.
+     */
+    int count(Color color) {
+        return keepElements ? bucket(color).size() : counts[slot(color)];
+    }
+
+    /**
+     * Возвращает элементы, у которых цвет задан и объявлен в {@link Color} раньше указанного, по возрастанию ID.
+     * @param color Эталонный цвет.
+     * @return Итератор слияния корзин меньших цветов.
+     */
+    Iterator<Person> lessThan(Color color) {
+        if (!keepElements) {
+            throw new IllegalStateException("Индекс хранит только количества элементов");
+        }
+        List<Iterator<Person>> sources = new ArrayList<>();
+        for (Color lower : COLORS) {
+            if (lower.ordinal() >= color.ordinal()) {
+                break;
+            }
+            TreeSet<Person> bucket = buckets.get(lower);
+            if (!bucket.isEmpty()) {
+                sources.add(bucket.iterator());
+            }
+        }
+        return new MergingIterator<>(sources);
+    }
+
+    /**
+     * @return Суммарный размер всех корзин.
+     */
+    int size() {
+        if (!keepElements) {
+            return Arrays.stream(counts).sum();
+        }
+        int size = nullBucket.size();
+        for (TreeSet<Person> bucket : buckets.values()) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private TreeSet<Person> bucket(Color color) {
+        return color == null ? nullBucket : buckets.get(color);
+    }
+
+    private static int slot(Color color) {
+        return color == null ? COLORS.length : color.ordinal();
+    }
+}
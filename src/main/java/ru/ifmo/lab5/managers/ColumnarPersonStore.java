@@ -0,0 +1,524 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Coordinates;
+import ru.ifmo.lab5.model.Location;
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.PersonCodec;
+import ru.ifmo.lab5.util.SortedListView;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Колоночное хранилище: поля элементов лежат в параллельных массивах примитивов, упорядоченных по ID.
+ * Объекты Person не хранятся и собираются заново при каждом обращении ({@link #get}, обход, снимок),
+ * поэтому на элемент не приходится ни заголовков объектов, ни ссылок, ни упакованных чисел.
+ * <p>
+ * Цвета и страна хранятся порядковыми номерами (-1 для null), дата создания - секундами и наносекундами UTC,
+ * строки - номерами в общей таблице строк. Таблица считает ссылки ячеек на каждую строку: строка,
+ * на которую больше не ссылается ни один элемент, удаляется из таблицы, а ее номер достается следующей новой строке.
+ * <p>
+ * Поиск по ID - двоичный. Новые элементы почти всегда получают максимальный ID и дописываются в конец.
+ * Удаленный элемент помечается и остается на месте, пока удаленных не станет больше половины,
+ * после чего массивы уплотняются. Не потокобезопасно: {@link CollectionManager} обращается к нему
+ * только под своей блокировкой.
+ */
+public class ColumnarPersonStore implements PersonStore {
+    private static final int INITIAL_CAPACITY = 16;
+    /** Количество удаленных элементов, ниже которого массивы не уплотняются. */
+    private static final int MIN_COMPACTION = 1024;
+
+    private static final byte FLAG_COORDINATES = 1;
+    private static final byte FLAG_CREATION_DATE = 1 << 1;
+    private static final byte FLAG_LOCATION = 1 << 2;
+    private static final byte FLAG_DELETED = 1 << 3;
+
+    /** Занятые ячейки, включая удаленные. */
+    private int length;
+    private int deleted;
+
+    private long[] ids = new long[0];
+    private int[] names = new int[0];
+    private byte[] flags = new byte[0];
+    private byte[] eyeColors = new byte[0];
+    private byte[] hairColors = new byte[0];
+    private byte[] nationalities = new byte[0];
+    private long[] heights = new long[0];
+    private double[] coordinatesX = new double[0];
+    private float[] coordinatesY = new float[0];
+    private long[] creationSeconds = new long[0];
+    private int[] creationNanos = new int[0];
+    private float[] locationX = new float[0];
+    private double[] locationY = new double[0];
+    private double[] locationZ = new double[0];
+    private int[] locationNames = new int[0];
+
+    /** Таблица строк; освобожденные номера содержат null до повторного использования. */
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    /** Количество ссылок ячеек на каждую строку таблицы. */
+    private int[] stringReferences = new int[0];
+    /** Стек освобожденных номеров строк. */
+    private int[] freeStrings = new int[0];
+    private int freeStringCount;
+
+    @Override
+    public void replaceAll(TreeSet<Person> persons) {
+        clear();
+        ensureCapacity(persons.size());
+        for (Person person : persons) {
+            write(length++, person);
+        }
+    }
+
+    @Override
+    public boolean add(Person person) {
+        long id = person.getId();
+        if (length == 0 || id > ids[length - 1]) {
+            ensureCapacity(length + 1);
+            write(length++, person);
+            return true;
+        }
+        int index = find(id);
+        if (index >= 0) {
+            if (!isDeleted(index)) {
+                return false;
+            }
+            write(index, person);
+            deleted--;
+            return true;
+        }
+        // Элемент с ID внутри диапазона: например, из журнала после удаления. Ячейки сдвигаются на одну
+        int insertion = -index - 1;
+        ensureCapacity(length + 1);
+        moveSlots(insertion, insertion + 1, length - insertion);
+        length++;
+        write(insertion, person);
+        return true;
+    }
+
+    @Override
+    public Person replace(Person person) {
+        int index = find(person.getId());
+        if (index < 0 || isDeleted(index)) {
+            return null;
+        }
+        Person previous = materialize(index);
+        int previousName = names[index];
+        int previousLocationName = locationNames[index];
+        write(index, person);
+        // Старые строки освобождаются после записи новых, чтобы совпадающая строка не удалялась из таблицы
+        release(previousName);
+        release(previousLocationName);
+        return previous;
+    }
+
+    @Override
+    public Person get(long id) {
+        int index = find(id);
+        return index < 0 || isDeleted(index) ? null : materialize(index);
+    }
+
+    @Override
+    public Person remove(long id) {
+        int index = find(id);
+        if (index < 0 || isDeleted(index)) {
+            return null;
+        }
+        Person removed = materialize(index);
+        releaseStrings(index);
+        flags[index] |= FLAG_DELETED;
+        deleted++;
+        if (deleted >= MIN_COMPACTION && deleted > length / 2) {
+            compact();
+        }
+        return removed;
+    }
+
+    @Override
+    public List<Person> removeGreater(long id) {
+        int from = lowerBound(id == Long.MAX_VALUE ? id : id + 1);
+        List<Person> removed = collectRemoved(from, length);
+        deleted -= (length - from) - removed.size();
+        length = from;
+        return removed;
+    }
+
+    @Override
+    public List<Person> removeLower(long id) {
+        int to = lowerBound(id);
+        List<Person> removed = collectRemoved(0, to);
+        deleted -= to - removed.size();
+        moveSlots(to, 0, length - to);
+        length -= to;
+        return removed;
+    }
+
+    private List<Person> collect(int from, int to) {
+        List<Person> persons = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (!isDeleted(i)) {
+                persons.add(materialize(i));
+            }
+        }
+        return persons;
+    }
+
+    /**
+     * Собирает элементы удаляемых ячеек и освобождает их строки.
+     */
+    private List<Person> collectRemoved(int from, int to) {
+        List<Person> removed = collect(from, to);
+        for (int i = from; i < to; i++) {
+            if (!isDeleted(i)) {
+                releaseStrings(i);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        length = 0;
+        deleted = 0;
+        strings.clear();
+        stringIndex.clear();
+        freeStringCount = 0;
+    }
+
+    @Override
+    public Person first() {
+        for (int i = 0; i < length; i++) {
+            if (!isDeleted(i)) {
+                return materialize(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Person last() {
+        for (int i = length - 1; i >= 0; i--) {
+            if (!isDeleted(i)) {
+                return materialize(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return length - deleted;
+    }
+
+    @Override
+    public Iterator<Person> iteratorFrom(long id) {
+        return new SlotIterator(lowerBound(id), index -> true);
+    }
+
+    @Override
+    public TreeSet<Person> snapshot() {
+        TreeSet<Person> snapshot = new TreeSet<>();
+        snapshot.addAll(new SortedListView<>(collect(0, length)));
+        return snapshot;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return false;
+    }
+
+    @Override
+    public String getTypeName() {
+        return ColumnarPersonStore.class.getName();
+    }
+
+    @Override
+    public boolean retainsElements() {
+        return false;
+    }
+
+    /**
+     * Сравнивает колонку цвета волос и собирает объекты только для подходящих элементов.
+     */
+    @Override
+    public Iterator<Person> iteratorHairColorLessThan(Color color) {
+        int bound = color.ordinal();
+        return new SlotIterator(0, index -> hairColors[index] >= 0 && hairColors[index] < bound);
+    }
+
+    /**
+     * Копирует колонку роста; без удаленных ячеек - одним копированием массива.
+     */
+    @Override
+    public long[] longColumn(NumericField field) {
+        if (!field.isInteger()) {
+            throw new IllegalArgumentException("Поле " + field.getFieldName() + " не целочисленное");
+        }
+        if (deleted == 0) {
+            return Arrays.copyOf(heights, length);
+        }
+        long[] column = new long[length - deleted];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (!isDeleted(i)) {
+                column[count++] = heights[i];
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Копирует колонку поля, пропуская удаленные ячейки и элементы без этого поля.
+     */
+    @Override
+    public double[] doubleColumn(NumericField field) {
+        int required = field == NumericField.HEIGHT ? 0
+                : field == NumericField.COORDINATES_X || field == NumericField.COORDINATES_Y ? FLAG_COORDINATES
+                : FLAG_LOCATION;
+        double[] column = new double[length - deleted];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            byte flag = flags[i];
+            if ((flag & FLAG_DELETED) != 0 || (flag & required) != required) {
+                continue;
+            }
+            switch (field) {
+                case HEIGHT:
+                    column[count++] = heights[i];
+                    break;
+                case COORDINATES_X:
+                    column[count++] = coordinatesX[i];
+                    break;
+                case COORDINATES_Y:
+                    column[count++] = coordinatesY[i];
+                    break;
+                case LOCATION_X:
+                    column[count++] = locationX[i];
+                    break;
+                case LOCATION_Y:
+                    column[count++] = locationY[i];
+                    break;
+                default:
+                    column[count++] = locationZ[i];
+                    break;
+            }
+        }
+        return count == column.length ? column : Arrays.copyOf(column, count);
+    }
+
+    /**
+     * Обход занятых ячеек по возрастанию ID, пропускающий удаленные и не подходящие под условие.
+     */
+    private final class SlotIterator implements Iterator<Person> {
+        private final IntPredicate filter;
+        private int next;
+
+        SlotIterator(int from, IntPredicate filter) {
+            this.filter = filter;
+            this.next = advance(from);
+        }
+
+        private int advance(int index) {
+            while (index < length && (isDeleted(index) || !filter.test(index))) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < length;
+        }
+
+        @Override
+        public Person next() {
+            if (next >= length) {
+                throw new NoSuchElementException();
+            }
+            Person person = materialize(next);
+            next = advance(next + 1);
+            return person;
+        }
+    }
+
+    private boolean isDeleted(int index) {
+        return (flags[index] & FLAG_DELETED) != 0;
+    }
+
+    /**
+     * @return Номер ячейки с указанным ID или {@code -(точка вставки) - 1}, как в {@link Arrays#binarySearch}.
+     */
+    private int find(long id) {
+        return Arrays.binarySearch(ids, 0, length, id);
+    }
+
+    /**
+     * @return Номер первой ячейки с ID не меньше указанного.
+     */
+    private int lowerBound(long id) {
+        int index = find(id);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void write(int index, Person person) {
+        Coordinates coordinates = person.getCoordinates();
+        LocalDateTime creationDate = person.getCreationDate();
+        Location location = person.getLocation();
+        flags[index] = (byte) ((coordinates != null ? FLAG_COORDINATES : 0)
+                | (creationDate != null ? FLAG_CREATION_DATE : 0)
+                | (location != null ? FLAG_LOCATION : 0));
+        ids[index] = person.getId();
+        names[index] = intern(person.getName());
+        eyeColors[index] = (byte) PersonCodec.ordinal(person.getEyeColor());
+        hairColors[index] = (byte) PersonCodec.ordinal(person.getHairColor());
+        nationalities[index] = (byte) PersonCodec.ordinal(person.getNationality());
+        heights[index] = person.getHeight();
+        coordinatesX[index] = coordinates != null ? coordinates.getX() : 0;
+        coordinatesY[index] = coordinates != null ? coordinates.getY() : 0;
+        creationSeconds[index] = creationDate != null ? creationDate.toEpochSecond(ZoneOffset.UTC) : 0;
+        creationNanos[index] = creationDate != null ? creationDate.getNano() : 0;
+        locationX[index] = location != null ? location.getX() : 0;
+        locationY[index] = location != null ? location.getY() : 0;
+        locationZ[index] = location != null ? location.getZ() : 0;
+        locationNames[index] = location != null ? intern(location.getName()) : -1;
+    }
+
+    private Person materialize(int index) {
+        int flag = flags[index];
+        Person person = new Person();
+        person.setId(ids[index]);
+        person.setName(string(names[index]));
+        if ((flag & FLAG_COORDINATES) != 0) {
+            person.setCoordinates(new Coordinates(coordinatesX[index], coordinatesY[index]));
+        }
+        if ((flag & FLAG_CREATION_DATE) != 0) {
+            person.setCreationDate(LocalDateTime.ofEpochSecond(creationSeconds[index], creationNanos[index], ZoneOffset.UTC));
+        }
+        person.setHeight(heights[index]);
+        person.setEyeColor(PersonCodec.color(eyeColors[index]));
+        person.setHairColor(PersonCodec.color(hairColors[index]));
+        person.setNationality(PersonCodec.country(nationalities[index]));
+        if ((flag & FLAG_LOCATION) != 0) {
+            person.setLocation(new Location(locationX[index], locationY[index], locationZ[index], string(locationNames[index])));
+        }
+        return person;
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            if (freeStringCount > 0) {
+                index = freeStrings[--freeStringCount];
+                strings.set(index, value);
+            } else {
+                index = strings.size();
+                strings.add(value);
+                if (index == stringReferences.length) {
+                    stringReferences = Arrays.copyOf(stringReferences, Math.max(INITIAL_CAPACITY, index + (index >> 1)));
+                }
+            }
+            stringReferences[index] = 0;
+            stringIndex.put(value, index);
+        }
+        stringReferences[index]++;
+        return index;
+    }
+
+    /**
+     * Снимает ссылку на строку; строка без ссылок удаляется из таблицы.
+     * @param index Номер строки или -1.
+     */
+    private void release(int index) {
+        if (index < 0 || --stringReferences[index] > 0) {
+            return;
+        }
+        stringIndex.remove(strings.set(index, null));
+        if (freeStringCount == freeStrings.length) {
+            freeStrings = Arrays.copyOf(freeStrings, Math.max(INITIAL_CAPACITY, freeStringCount + (freeStringCount >> 1)));
+        }
+        freeStrings[freeStringCount++] = index;
+    }
+
+    /**
+     * Освобождает строки ячейки, которая удаляется или будет перезаписана.
+     */
+    private void releaseStrings(int index) {
+        release(names[index]);
+        release(locationNames[index]);
+    }
+
+    private String string(int index) {
+        return index < 0 ? null : strings.get(index);
+    }
+
+    /**
+     * Переносит удаленные ячейки в конец, сохраняя порядок остальных.
+     */
+    private void compact() {
+        int target = 0;
+        for (int i = 0; i < length; i++) {
+            if (!isDeleted(i)) {
+                if (i != target) {
+                    moveSlots(i, target, 1);
+                }
+                target++;
+            }
+        }
+        length = target;
+        deleted = 0;
+    }
+
+    private void moveSlots(int from, int to, int count) {
+        System.arraycopy(ids, from, ids, to, count);
+        System.arraycopy(names, from, names, to, count);
+        System.arraycopy(flags, from, flags, to, count);
+        System.arraycopy(eyeColors, from, eyeColors, to, count);
+        System.arraycopy(hairColors, from, hairColors, to, count);
+        System.arraycopy(nationalities, from, nationalities, to, count);
+        System.arraycopy(heights, from, heights, to, count);
+        System.arraycopy(coordinatesX, from, coordinatesX, to, count);
+        System.arraycopy(coordinatesY, from, coordinatesY, to, count);
+        System.arraycopy(creationSeconds, from, creationSeconds, to, count);
+        System.arraycopy(creationNanos, from, creationNanos, to, count);
+        System.arraycopy(locationX, from, locationX, to, count);
+        System.arraycopy(locationY, from, locationY, to, count);
+        System.arraycopy(locationZ, from, locationZ, to, count);
+        System.arraycopy(locationNames, from, locationNames, to, count);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        eyeColors = Arrays.copyOf(eyeColors, newCapacity);
+        hairColors = Arrays.copyOf(hairColors, newCapacity);
+        nationalities = Arrays.copyOf(nationalities, newCapacity);
+        heights = Arrays.copyOf(heights, newCapacity);
+        coordinatesX = Arrays.copyOf(coordinatesX, newCapacity);
+        coordinatesY = Arrays.copyOf(coordinatesY, newCapacity);
+        creationSeconds = Arrays.copyOf(creationSeconds, newCapacity);
+        creationNanos = Arrays.copyOf(creationNanos, newCapacity);
+        locationX = Arrays.copyOf(locationX, newCapacity);
+        locationY = Arrays.copyOf(locationY, newCapacity);
+        locationZ = Arrays.copyOf(locationZ, newCapacity);
+        locationNames = Arrays.copyOf(locationNames, newCapacity);
+    }
+}
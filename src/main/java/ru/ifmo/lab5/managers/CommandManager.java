@@ -1,6 +1,9 @@
 package ru.ifmo.lab5.managers;
 
 import ru.ifmo.lab5.commands.Command;
+import ru.ifmo.lab5.util.CommandResult;
+
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,17 +14,20 @@ import java.util.Map;
 public class CommandManager {
     private final Map<String, Command> commands = new HashMap<>();
     private final CollectionManager collectionManager;
-    private final XmlFileManager xmlFileManager;
+    private final FileManager fileManager;
+    private final SaveManager saveManager;
     private ScriptRunner scriptRunner; // Теперь устанавливается сеттером
 
     /**
      * Конструктор менеджера команд.
      * @param collectionManager Менеджер коллекции, передается командам.
-     * @param xmlFileManager Менеджер файлов, передается командам.
+     * @param fileManager Хранилище коллекции в файле, передается командам.
+     * @param saveManager Менеджер сохранения, используется командами save и save_status.
      */
-    public CommandManager(CollectionManager collectionManager, XmlFileManager xmlFileManager) {
+    public CommandManager(CollectionManager collectionManager, FileManager fileManager, SaveManager saveManager) {
         this.collectionManager = collectionManager;
-        this.xmlFileManager = xmlFileManager;
+        this.fileManager = fileManager;
+        this.saveManager = saveManager;
     }
 
     /**
@@ -50,6 +56,25 @@ public class CommandManager {
         return commands.get(commandName);
     }
 
+    /**
+     * Выполняет команду, превращая ошибки ввода-вывода коллекции в результат с ошибкой.
+     * Команды не перехватывают эти ошибки сами: журнал изменений сообщает о сбое через
+     * {@link JournalException}, а ленивое чтение элементов из файла - через {@link UncheckedIOException}.
+     * @param command Команда.
+     * @param arguments Аргументы команды.
+     * @return Результат выполнения команды.
+     */
+    public CommandResult execute(Command command, String arguments) {
+        try {
+            return command.execute(arguments);
+        } catch (JournalException e) {
+            // Журнал отклонил изменение или не смог сбросить его на диск (тогда оно уже применено в памяти)
+            return CommandResult.error("Не удалось записать изменение в журнал: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            return CommandResult.error("Ошибка чтения данных коллекции: " + e.getMessage());
+        }
+    }
+
     /**
      * Возвращает карту всех зарегистрированных команд.
      * @return Карта команд.
@@ -60,7 +85,8 @@ public class CommandManager {
 
     // Геттеры для зависимостей, которые нужны командам при их создании в ConsoleApplication
     public CollectionManager getCollectionManager() { return collectionManager; }
-    public XmlFileManager getXmlFileManager() { return xmlFileManager; }
+    public FileManager getFileManager() { return fileManager; }
+    public SaveManager getSaveManager() { return saveManager; }
 
     /**
      * Возвращает исполнителя скриптов.
@@ -2,6 +2,7 @@ package ru.ifmo.lab5.managers;
 
 import org.jline.reader.*;
 import ru.ifmo.lab5.commands.*;
+import ru.ifmo.lab5.util.CommandLine;
 import ru.ifmo.lab5.util.CommandResult;
 import ru.ifmo.lab5.util.CommandStatus;
 
@@ -33,7 +34,6 @@ public class ConsoleApplication {
      */
     public void registerCommands() {
         CollectionManager collectionManager = commandManager.getCollectionManager();
-        XmlFileManager xmlFileManager = commandManager.getXmlFileManager();
         ScriptRunner scriptRunner = commandManager.getScriptRunner();
 
         commandManager.register("help", new HelpCommand(commandManager));
@@ -43,12 +43,20 @@ public class ConsoleApplication {
         commandManager.register("update", new UpdateCommand(collectionManager, userInputHandler));
         commandManager.register("remove_by_id", new RemoveByIdCommand(collectionManager));
         commandManager.register("clear", new ClearCommand(collectionManager));
-        commandManager.register("save", new SaveCommand(collectionManager, xmlFileManager));
+        commandManager.register("save", new SaveCommand(commandManager.getSaveManager()));
+        commandManager.register("save_status", new SaveStatusCommand(commandManager.getSaveManager()));
         commandManager.register("exit", new ExitCommand(this));
         commandManager.register("add_if_min", new AddIfMinCommand(collectionManager, userInputHandler));
         commandManager.register("remove_greater", new RemoveGreaterCommand(collectionManager, userInputHandler));
         commandManager.register("remove_lower", new RemoveLowerCommand(collectionManager, userInputHandler));
         commandManager.register("average_of_height", new AverageOfHeightCommand(collectionManager));
+        commandManager.register("sum", new SumCommand(collectionManager));
+        commandManager.register("min", new MinCommand(collectionManager));
+        commandManager.register("max", new MaxCommand(collectionManager));
+        commandManager.register("histogram", new HistogramCommand(collectionManager));
+        if (collectionManager.getParallelismManager() != null) {
+            commandManager.register("set", new SetCommand(collectionManager.getParallelismManager()));
+        }
         commandManager.register("count_by_hair_color", new CountByHairColorCommand(collectionManager, userInputHandler));
         commandManager.register("filter_less_than_hair_color", new FilterLessThanHairColorCommand(collectionManager, userInputHandler));
         commandManager.register("execute_script", new ExecuteScriptCommand(scriptRunner));
@@ -85,13 +93,16 @@ public class ConsoleApplication {
      * @param line Введенная пользователем строка.
      */
     public void processCommand(String line) {
-        String[] parts = line.split("\\s+", 2);
-        String commandName = parts[0].toLowerCase();
-        String arguments = parts.length > 1 ? parts[1] : null;
+        CommandLine commandLine = CommandLine.parse(line);
+        if (commandLine == null) {
+            return;
+        }
+        String commandName = commandLine.getName();
+        String arguments = commandLine.getArguments();
 
         Command command = commandManager.getCommand(commandName);
         if (command != null) {
-            CommandResult result = command.execute(arguments);
+            CommandResult result = commandManager.execute(command, arguments);
 
             if (result.getStatus() == CommandStatus.SUCCESS) {
                 if (result.getMessage() != null && !result.getMessage().isEmpty()) {
@@ -0,0 +1,112 @@
+package ru.ifmo.lab5.managers;
+
+import jakarta.xml.bind.JAXBException;
+import ru.ifmo.lab5.model.Person;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.function.LongConsumer;
+
+/**
+ * Общий интерфейс хранилищ коллекции в файле.
+ * Реализация выбирается по расширению файла: {@value #BINARY_EXTENSION} - двоичный формат
+ * ({@link BinaryFileManager}), любое другое - XML ({@link XmlFileManager}).
+ */
+public interface FileManager {
+    /**
+     * Расширение файла двоичного снимка.
+     */
+    String BINARY_EXTENSION = ".bin";
+
+    /**
+     * Шаг, с которым потоковая загрузка сообщает о прогрессе.
+     */
+    long PROGRESS_STEP = 100_000;
+
+    /**
+     * Создает хранилище, подходящее для указанного файла.
+     * @param filePath Путь к файлу коллекции.
+     * @return Хранилище для файла.
+     */
+    static FileManager forPath(String filePath) {
+        String path = filePath.replace("\"", "");
+        if (path.toLowerCase().endsWith(BINARY_EXTENSION)) {
+            return new BinaryFileManager(path);
+        }
+        return new XmlFileManager(path);
+    }
+
+    /**
+     * Загружает коллекцию из файла.
+     * Отсутствующий или пустой файл дает пустую коллекцию.
+     * @return Загруженная коллекция.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если XML-файл имеет неверный формат.
+     * @throws SecurityException если нет прав на чтение файла.
+     */
+    TreeSet<Person> load() throws IOException, JAXBException, SecurityException;
+
+    /**
+     * Загружает коллекцию из файла прямо в менеджер коллекции.
+     * Ожидается, что менеджер коллекции пуст.
+     * @param collectionManager Менеджер коллекции, в который добавляются элементы.
+     * @param progressListener Получает количество прочитанных элементов. Может быть null.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если XML-файл имеет неверный формат.
+     * @throws SecurityException если нет прав на чтение файла.
+     */
+    void load(CollectionManager collectionManager, LongConsumer progressListener) throws IOException, JAXBException, SecurityException;
+
+    /**
+     * Атомарно сохраняет коллекцию в файл.
+     * @param collection Коллекция для сохранения.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если произошла ошибка при преобразовании в XML.
+     * @throws SecurityException если нет прав на запись в файл.
+     */
+    void save(Collection<Person> collection) throws IOException, JAXBException, SecurityException;
+
+    /**
+     * Атомарно сохраняет коллекцию в файл, по возможности с отступами.
+     * Форматы, не поддерживающие отступы, игнорируют флаг.
+     * @param collection Коллекция для сохранения.
+     * @param indent Добавлять ли переводы строк и отступы.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если произошла ошибка при преобразовании в XML.
+     * @throws SecurityException если нет прав на запись в файл.
+     */
+    default void save(Collection<Person> collection, boolean indent) throws IOException, JAXBException, SecurityException {
+        save(collection);
+    }
+
+    /**
+     * Атомарно сохраняет коллекцию в файл, сообщая о прогрессе записи.
+     * Реализация по умолчанию сообщает о прогрессе один раз, после записи всех элементов.
+     * @param collection Коллекция для сохранения.
+     * @param indent Добавлять ли переводы строк и отступы.
+     * @param progressListener Получает количество записанных элементов. Может быть null.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если произошла ошибка при преобразовании в XML.
+     * @throws SecurityException если нет прав на запись в файл.
+     */
+    default void save(Collection<Person> collection, boolean indent, LongConsumer progressListener)
+            throws IOException, JAXBException, SecurityException {
+        save(collection, indent);
+        if (progressListener != null) {
+            progressListener.accept(collection.size());
+        }
+    }
+
+    /**
+     * Включает сохранение предыдущей версии файла как {@code <файл>.bak} перед каждой записью.
+     * @param keepBackup true, чтобы хранить одну резервную копию.
+     */
+    void setKeepBackup(boolean keepBackup);
+
+    /**
+     * Возвращает путь к файлу коллекции.
+     * @return Путь к файлу.
+     */
+    String getFilePath();
+}
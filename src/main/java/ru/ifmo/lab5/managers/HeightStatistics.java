@@ -0,0 +1,90 @@
+package ru.ifmo.lab5.managers;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+
+/**
+ * Накапливаемая статистика по росту элементов коллекции.
+ * Обновляется при каждом добавлении и удалении, поэтому среднее, минимум и максимум не требуют обхода коллекции.
+ * Сумма хранится в 128 битах (две половины по 64 бита), поэтому не переполняется ни при каком количестве элементов.
+ */
+final class HeightStatistics {
+    private static final double TWO_POW_64 = 0x1p64;
+
+    private long sumLow;
+    private long sumHigh;
+    private long count;
+    /** Мультимножество значений роста: значение -> количество элементов с таким ростом. */
+    private final TreeMap<Long, Integer> heights = new TreeMap<>();
+
+    /**
+     * Учитывает рост добавленного элемента.
+     * @param height Рост.
+     */
+    void add(long height) {
+        long low = sumLow + height;
+        long carry = Long.compareUnsigned(low, sumLow) < 0 ? 1 : 0;
+        sumHigh += (height >> 63) + carry;
+        sumLow = low;
+        count++;
+        heights.merge(height, 1, Integer::sum);
+    }
+
+    /**
+     * Исключает рост удаленного элемента.
+     * @param height Рост.
+     */
+    void remove(long height) {
+        long low = sumLow - height;
+        long borrow = Long.compareUnsigned(sumLow, height) < 0 ? 1 : 0;
+        sumHigh -= (height >> 63) + borrow;
+        sumLow = low;
+        count--;
+        heights.computeIfPresent(height, (key, n) -> n == 1 ? null : n - 1);
+    }
+
+    /**
+     * Сбрасывает статистику.
+     */
+    void clear() {
+        sumLow = 0;
+        sumHigh = 0;
+        count = 0;
+        heights.clear();
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Средний рост или 0, если элементов нет.
+     */
+    double getAverage() {
+        if (count == 0) {
+            return 0;
+        }
+        double unsignedLow = (sumLow >>> 1) * 2.0 + (sumLow & 1);
+        return (sumHigh * TWO_POW_64 + unsignedLow) / count;
+    }
+
+    /**
+     * @return Точная сумма роста всех элементов.
+     */
+    BigInteger getSum() {
+        BigInteger unsignedLow = BigInteger.valueOf(sumLow >>> 1).shiftLeft(1).add(BigInteger.valueOf(sumLow & 1));
+        return BigInteger.valueOf(sumHigh).shiftLeft(64).add(unsignedLow);
+    }
+
+    OptionalLong getMin() {
+        Map.Entry<Long, Integer> entry = heights.firstEntry();
+        return entry == null ? OptionalLong.empty() : OptionalLong.of(entry.getKey());
+    }
+
+    OptionalLong getMax() {
+        Map.Entry<Long, Integer> entry = heights.lastEntry();
+        return entry == null ? OptionalLong.empty() : OptionalLong.of(entry.getKey());
+    }
+}
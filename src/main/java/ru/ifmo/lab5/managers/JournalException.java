@@ -0,0 +1,29 @@
+package ru.ifmo.lab5.managers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Ошибка журнала изменений: журнал отклонил изменение или не смог сбросить его на диск.
+ * Во втором случае изменение уже применено в памяти.
+ * Отделена от прочих {@link UncheckedIOException}, чтобы ошибки чтения данных коллекции
+ * не выдавались за ошибки журнала.
+ */
+public class JournalException extends UncheckedIOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message Описание ошибки.
+     * @param cause Исходная ошибка ввода-вывода.
+     */
+    public JournalException(String message, IOException cause) {
+        super(message, cause);
+    }
+
+    /**
+     * @param cause Исходная ошибка ввода-вывода.
+     */
+    public JournalException(IOException cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,397 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.AtomicFileWriter;
+import ru.ifmo.lab5.util.PersonCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений коллекции с отложенной записью (write-behind).
+ * Каждое изменение из {@link CollectionManager} дописывается в файл {@code <файл коллекции>.journal}
+ * как двоичная запись. Запись применяется в памяти раньше, чем оказывается на диске: гарантируется
+ * только, что команда, сделавшая изменение, не завершится успешно до его сброса на диск.
+ * <p>
+ * Формат записи: длина тела (int), тело (тип операции и данные), CRC32 тела (int).
+ * <p>
+ * Под блокировкой записи коллекции запись только добавляется в буфер ({@code on*}), а сброс на диск
+ * ожидается в {@link #afterChange()}, уже после снятия блокировки. Поэтому записи из разных потоков
+ * сбрасываются одной пачкой (group commit): первый ожидающий поток пишет буфер и вызывает {@code force}
+ * за всех, остальные ждут. Команда завершается только после сброса своей записи, но другие потоки
+ * могут увидеть изменение в памяти чуть раньше, чем оно окажется на диске.
+ * <p>
+ * Если запись на диск завершилась ошибкой, изменения, ожидавшие сброса, уже применены в памяти,
+ * но их команды получают ошибку. Журнал переходит в состояние сбоя и отклоняет новые изменения
+ * до их применения. Состояние снимается следующим успешным сохранением снимка ({@link #checkpoint(long)}),
+ * в который вошли все принятые изменения: журнал пересоздается пустым.
+ * <p>
+ * При сохранении снимка из журнала удаляются записи, вошедшие в снимок.
+ */
+public class JournalManager implements CollectionChangeListener, Closeable {
+    private static final byte ADD = 1;
+    private static final byte UPDATE = 2;
+    private static final byte REMOVE_BY_ID = 3;
+    private static final byte REMOVE_GREATER = 4;
+    private static final byte REMOVE_LOWER = 5;
+    private static final byte CLEAR = 6;
+
+    private final Path journalPath;
+    private FileChannel channel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushFinished = lock.newCondition();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /*
+     * Позиции отсчитываются в байтах от начала журнала с момента открытия и только растут:
+     * checkpoint удаляет начало файла, сдвигая fileStart, но не позиции, которых ждут другие потоки.
+     */
+    /** Позиция конца всех добавленных записей, включая еще не сброшенные на диск. */
+    private long appendedPosition = 0;
+    /** Позиция конца записей, уже сброшенных на диск. */
+    private long durablePosition = 0;
+    /** Позиция, соответствующая началу файла журнала. */
+    private long fileStart = 0;
+    private boolean flushing = false;
+    /** Ошибка записи на диск; пока она установлена, новые изменения отклоняются. */
+    private IOException failure;
+    /** Позиция, после сброса до которой запись текущего потока окажется на диске. */
+    private final ThreadLocal<Long> awaitedPosition = new ThreadLocal<>();
+
+    /**
+     * Открывает (или создает) журнал рядом с файлом коллекции.
+     * @param collectionFilePath Путь к файлу коллекции.
+     * @throws IOException если файл журнала не удалось открыть.
+     */
+    public JournalManager(String collectionFilePath) throws IOException {
+        this.journalPath = Paths.get(collectionFilePath.replace("\"", "") + ".journal");
+        this.channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Применяет к коллекции все записи журнала, сделанные после последнего сохранения.
+     * Оборванная или поврежденная запись в конце файла (сбой во время записи) отбрасывается,
+     * и журнал обрезается до последней целой записи.
+     * Вызывается до подписки журнала на изменения коллекции.
+     * @param collectionManager Менеджер коллекции с загруженным снимком.
+     * @return Количество примененных записей.
+     * @throws IOException если журнал не удалось прочитать.
+     */
+    public int replay(CollectionManager collectionManager) throws IOException {
+        channel.position(0);
+        // Поток не закрывается, чтобы не закрыть канал
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        long fileSize = channel.size();
+        long validEnd = 0;
+        int applied = 0;
+        CRC32 crc = new CRC32();
+        while (validEnd + Integer.BYTES <= fileSize) {
+            int length = in.readInt();
+            if (length <= 0 || validEnd + 2L * Integer.BYTES + length > fileSize) {
+                break;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            int checksum = in.readInt();
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(collectionManager, new DataInputStream(new ByteArrayInputStream(body)));
+            applied++;
+            validEnd += 2L * Integer.BYTES + length;
+        }
+        if (validEnd < fileSize) {
+            System.err.println("Журнал " + journalPath + " содержит оборванную запись, она будет отброшена.");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        fileStart = 0;
+        durablePosition = validEnd;
+        appendedPosition = validEnd;
+        return applied;
+    }
+
+    private void apply(CollectionManager collectionManager, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ADD:
+                collectionManager.addLoaded(PersonCodec.read(in));
+                break;
+            case UPDATE: {
+                long id = in.readLong();
+                collectionManager.update(id, PersonCodec.read(in));
+                break;
+            }
+            case REMOVE_BY_ID:
+                collectionManager.removeById(in.readLong());
+                break;
+            case REMOVE_GREATER:
+                collectionManager.removeGreater(threshold(in.readLong()));
+                break;
+            case REMOVE_LOWER:
+                collectionManager.removeLower(threshold(in.readLong()));
+                break;
+            case CLEAR:
+                collectionManager.clear();
+                break;
+            default:
+                throw new IOException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private static Person threshold(long id) {
+        Person person = new Person();
+        person.setId(id);
+        return person;
+    }
+
+    /**
+     * Возвращает позицию конца журнала вместе с еще не сброшенными записями - отметку
+     * для последующего {@link #checkpoint(long)}.
+     * Чтобы отметка точно соответствовала снимку, ее нужно брать вместе со снимком под блокировкой
+     * чтения коллекции: записи добавляются под блокировкой записи, поэтому в этот момент
+     * все добавленные записи уже применены и входят в снимок.
+     * @return Позиция в журнале.
+     */
+    public long mark() {
+        lock.lock();
+        try {
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет из журнала записи, вошедшие в сохраненный снимок коллекции.
+     * Записи после отметки (изменения, сделанные во время сохранения) остаются: они атомарно
+     * переписываются в новый файл журнала, который заменяет старый.
+     * Если журнал в состоянии сбоя, а снимок содержит все принятые изменения, журнал пересоздается пустым
+     * и снова принимает изменения.
+     * @param mark Отметка {@link #mark()}, взятая вместе со снимком.
+     * @throws IOException если журнал не удалось переписать или он в состоянии сбоя,
+     *                     а после снимка были приняты изменения.
+     */
+    public void checkpoint(long mark) throws IOException {
+        lock.lock();
+        try {
+            try {
+                // Записи до отметки должны оказаться на диске до того, как журнал будет переписан
+                awaitDurable(mark);
+            } catch (JournalException e) {
+                // Ошибка сохранена в failure и обрабатывается ниже
+            }
+            while (flushing) {
+                flushFinished.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                if (mark < appendedPosition) {
+                    throw new IOException("Журнал недоступен после ошибки записи", failure);
+                }
+                reset();
+                return;
+            }
+            long remaining = durablePosition - Math.max(mark, fileStart);
+            if (remaining == 0) {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                fileStart = durablePosition;
+                return;
+            }
+            ByteBuffer tail = ByteBuffer.allocate(Math.toIntExact(remaining));
+            long position = durablePosition - fileStart - remaining;
+            while (tail.hasRemaining()) {
+                int read = channel.read(tail, position + tail.position());
+                if (read < 0) {
+                    throw new EOFException("Журнал " + journalPath + " короче ожидаемого");
+                }
+            }
+            tail.flip();
+            AtomicFileWriter.<IOException>write(journalPath, false, target -> {
+                while (tail.hasRemaining()) {
+                    target.write(tail);
+                }
+            });
+            // Старый канал указывает на замененный файл
+            channel.close();
+            channel = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(remaining);
+            fileStart = durablePosition - remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Заменяет журнал в состоянии сбоя пустым файлом. Все принятые записи уже входят в сохраненный снимок,
+     * поэтому и несброшенный буфер отбрасывается. Вызывается под блокировкой.
+     */
+    private void reset() throws IOException {
+        AtomicFileWriter.<IOException>write(journalPath, false, target -> {});
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Старый канал указывает на замененный файл и больше не используется
+        }
+        channel = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        pending = new ByteArrayOutputStream();
+        // Отброшенные записи вошли в снимок, поэтому ожидающие их потоки могут считать их сохраненными
+        durablePosition = appendedPosition;
+        fileStart = appendedPosition;
+        failure = null;
+    }
+
+    @Override
+    public void onAdd(Person person) {
+        append(ADD, out -> PersonCodec.write(out, person));
+    }
+
+    @Override
+    public void onUpdate(long id, Person person) {
+        append(UPDATE, out -> {
+            out.writeLong(id);
+            PersonCodec.write(out, person);
+        });
+    }
+
+    @Override
+    public void onRemoveById(long id) {
+        append(REMOVE_BY_ID, out -> out.writeLong(id));
+    }
+
+    @Override
+    public void onRemoveGreater(long id) {
+        append(REMOVE_GREATER, out -> out.writeLong(id));
+    }
+
+    @Override
+    public void onRemoveLower(long id) {
+        append(REMOVE_LOWER, out -> out.writeLong(id));
+    }
+
+    @Override
+    public void onClear() {
+        append(CLEAR, out -> {});
+    }
+
+    /**
+     * Ждет, пока запись, добавленная текущим потоком, не окажется на диске.
+     * @throws JournalException если запись не удалось сбросить на диск.
+     */
+    @Override
+    public void afterChange() {
+        Long position = awaitedPosition.get();
+        if (position == null) {
+            return;
+        }
+        awaitedPosition.remove();
+        lock.lock();
+        try {
+            awaitDurable(position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Добавляет запись в буфер; сброс на диск ожидается в {@link #afterChange()}.
+     * @throws JournalException если журнал в состоянии сбоя или запись не удалось сериализовать.
+     */
+    private void append(byte type, RecordBody body) {
+        byte[] record;
+        try {
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(64);
+            DataOutputStream bodyOut = new DataOutputStream(bodyBytes);
+            bodyOut.writeByte(type);
+            body.write(bodyOut);
+            CRC32 crc = new CRC32();
+            crc.update(bodyBytes.toByteArray());
+
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(bodyBytes.size() + 2 * Integer.BYTES);
+            DataOutputStream recordOut = new DataOutputStream(recordBytes);
+            recordOut.writeInt(bodyBytes.size());
+            bodyBytes.writeTo(recordOut);
+            recordOut.writeInt((int) crc.getValue());
+            record = recordBytes.toByteArray();
+        } catch (IOException e) {
+            throw new JournalException(e);
+        }
+
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new JournalException("Журнал недоступен после ошибки записи", failure);
+            }
+            pending.write(record, 0, record.length);
+            appendedPosition += record.length;
+            awaitedPosition.set(appendedPosition);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждет, пока журнал не будет сброшен на диск хотя бы до указанной позиции.
+     * Если сброс никем не выполняется, текущий поток выполняет его сам для всех накопленных записей.
+     * Вызывается под блокировкой.
+     */
+    private void awaitDurable(long position) {
+        while (durablePosition < position) {
+            if (failure != null) {
+                throw new JournalException("Журнал недоступен после ошибки записи", failure);
+            }
+            if (flushing) {
+                flushFinished.awaitUninterruptibly();
+                continue;
+            }
+            ByteArrayOutputStream batch = pending;
+            pending = new ByteArrayOutputStream();
+            flushing = true;
+            lock.unlock();
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                lock.lock();
+                flushing = false;
+                if (error == null) {
+                    durablePosition += batch.size();
+                } else {
+                    failure = error;
+                }
+                flushFinished.signalAll();
+            }
+        }
+    }
+
+    /**
+     * Закрывает файл журнала.
+     * @throws IOException если произошла ошибка при закрытии.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,169 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.*;
+
+import java.time.LocalDateTime;
+
+import static ru.ifmo.lab5.managers.BinaryFileManager.*;
+
+/**
+ * Элемент коллекции, лениво декодируемый из отображенного в память двоичного снимка ({@link MappedSnapshot}).
+ * ID известен сразу, числовые поля фиксированной ширины (рост, цвета, национальность) читаются
+ * прямо из отображения, а остальные поля декодируются при первом обращении и запоминаются.
+ * Перед любым изменением элемент полностью декодируется.
+ */
+final class MappedPerson extends Person {
+    private final MappedSnapshot snapshot;
+    private final long index;
+    private volatile boolean materialized = false;
+
+    /**
+     * Конструктор.
+     * @param snapshot Отображенный снимок.
+     * @param index Номер записи в снимке.
+     * @param id ID записи.
+     */
+    MappedPerson(MappedSnapshot snapshot, long index, long id) {
+        this.snapshot = snapshot;
+        this.index = index;
+        super.setId(id);
+    }
+
+    /**
+     * Возвращает объект, все поля которого заполнены.
+     * Для еще не декодированного элемента возвращается отдельная копия, чтобы не держать
+     * в памяти все элементы после полного обхода (например, при сохранении).
+     * @param person Элемент коллекции.
+     * @return Объект с заполненными полями.
+     */
+    static Person unwrap(Person person) {
+        if (person instanceof MappedPerson) {
+            MappedPerson mapped = (MappedPerson) person;
+            return mapped.materialized ? mapped : mapped.snapshot.decode(mapped.index);
+        }
+        return person;
+    }
+
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+        synchronized (this) {
+            if (materialized) {
+                return;
+            }
+            Person decoded = snapshot.decode(index);
+            super.setName(decoded.getName());
+            if (decoded.getCoordinates() != null) {
+                super.setCoordinates(decoded.getCoordinates());
+            }
+            if (decoded.getCreationDate() != null) {
+                super.setCreationDate(decoded.getCreationDate());
+            }
+            super.setHeight(decoded.getHeight());
+            super.setEyeColor(decoded.getEyeColor());
+            super.setHairColor(decoded.getHairColor());
+            super.setNationality(decoded.getNationality());
+            super.setLocation(decoded.getLocation());
+            materialized = true;
+        }
+    }
+
+    @Override
+    public long getHeight() {
+        return materialized ? super.getHeight() : snapshot.getLong(index, OFFSET_HEIGHT);
+    }
+
+    @Override
+    public Color getEyeColor() {
+        return materialized ? super.getEyeColor() : snapshot.getColor(index, OFFSET_EYE_COLOR);
+    }
+
+    @Override
+    public Color getHairColor() {
+        return materialized ? super.getHairColor() : snapshot.getColor(index, OFFSET_HAIR_COLOR);
+    }
+
+    @Override
+    public Country getNationality() {
+        return materialized ? super.getNationality() : snapshot.getCountry(index, OFFSET_NATIONALITY);
+    }
+
+    @Override
+    public String getName() {
+        materialize();
+        return super.getName();
+    }
+
+    @Override
+    public Coordinates getCoordinates() {
+        materialize();
+        return super.getCoordinates();
+    }
+
+    @Override
+    public LocalDateTime getCreationDate() {
+        materialize();
+        return super.getCreationDate();
+    }
+
+    @Override
+    public Location getLocation() {
+        materialize();
+        return super.getLocation();
+    }
+
+    @Override
+    public void setName(String name) {
+        materialize();
+        super.setName(name);
+    }
+
+    @Override
+    public void setCoordinates(Coordinates coordinates) {
+        materialize();
+        super.setCoordinates(coordinates);
+    }
+
+    @Override
+    public void setCreationDate(LocalDateTime creationDate) {
+        materialize();
+        super.setCreationDate(creationDate);
+    }
+
+    @Override
+    public void setHeight(long height) {
+        materialize();
+        super.setHeight(height);
+    }
+
+    @Override
+    public void setEyeColor(Color eyeColor) {
+        materialize();
+        super.setEyeColor(eyeColor);
+    }
+
+    @Override
+    public void setHairColor(Color hairColor) {
+        materialize();
+        super.setHairColor(hairColor);
+    }
+
+    @Override
+    public void setNationality(Country nationality) {
+        materialize();
+        super.setNationality(nationality);
+    }
+
+    @Override
+    public void setLocation(Location location) {
+        materialize();
+        super.setLocation(location);
+    }
+
+    @Override
+    public StringBuilder appendTo(StringBuilder sb) {
+        materialize();
+        return super.appendTo(sb);
+    }
+}
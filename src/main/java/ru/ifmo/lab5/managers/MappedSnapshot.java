@@ -0,0 +1,185 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Country;
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.PersonCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static ru.ifmo.lab5.managers.BinaryFileManager.*;
+
+/**
+ * Двоичный снимок коллекции, отображенный в память только для чтения.
+ * Области записей, столбца ID и таблицы строк отображаются сегментами не больше 2 ГБ;
+ * сегменты записей и ID выровнены по размеру элемента, поэтому элемент никогда не пересекает границу.
+ * Чтение идет абсолютными методами буфера и не меняет его позицию, поэтому безопасно из разных потоков.
+ */
+final class MappedSnapshot {
+    private final long recordCount;
+    private final ByteBuffer[] recordSegments;
+    private final long recordsPerSegment;
+    private final ByteBuffer[] idSegments;
+    private final long idsPerSegment;
+    private final ByteBuffer[] stringSegments;
+    private final long stringSegmentSize;
+
+    private MappedSnapshot(long recordCount, ByteBuffer[] recordSegments, ByteBuffer[] idSegments, ByteBuffer[] stringSegments) {
+        this.recordCount = recordCount;
+        this.recordSegments = recordSegments;
+        this.recordsPerSegment = segmentSize(RECORD_SIZE) / RECORD_SIZE;
+        this.idSegments = idSegments;
+        this.idsPerSegment = segmentSize(Long.BYTES) / Long.BYTES;
+        this.stringSegments = stringSegments;
+        this.stringSegmentSize = segmentSize(1);
+    }
+
+    /**
+     * Отображает двоичный файл в память.
+     * @param path Путь к файлу.
+     * @return Отображенный снимок.
+     * @throws IOException если файл не удалось отобразить или он имеет неверный формат.
+     */
+    static MappedSnapshot open(Path path) throws IOException {
+        // Отображение остается действительным и после закрытия канала
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+            while (headerBuffer.hasRemaining()) {
+                if (channel.read(headerBuffer, headerBuffer.position()) < 0) {
+                    throw new IOException("Файл " + path + " обрезан.");
+                }
+            }
+            Header header = readHeader(new DataInputStream(new ByteArrayInputStream(headerBuffer.array())));
+            long recordsLength = (long) RECORD_SIZE * header.recordCount;
+            long idsLength = (long) Long.BYTES * header.recordCount;
+            if (header.recordsOffset + recordsLength != header.idsOffset
+                    || header.idsOffset + idsLength + Integer.BYTES != channel.size()) {
+                throw new IOException("Файл " + path + " поврежден: размеры разделов не совпадают с заголовком.");
+            }
+            return new MappedSnapshot(header.recordCount,
+                    map(channel, header.recordsOffset, recordsLength, RECORD_SIZE),
+                    map(channel, header.idsOffset, idsLength, Long.BYTES),
+                    map(channel, HEADER_SIZE, header.recordsOffset - HEADER_SIZE, 1));
+        }
+    }
+
+    private static long segmentSize(int unit) {
+        return (Integer.MAX_VALUE / unit) * (long) unit;
+    }
+
+    private static ByteBuffer[] map(FileChannel channel, long offset, long length, int unit) throws IOException {
+        long segmentSize = segmentSize(unit);
+        ByteBuffer[] segments = new ByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * segmentSize;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(segmentSize, length - start));
+        }
+        return segments;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    long getId(long index) {
+        return idSegments[(int) (index / idsPerSegment)].getLong((int) (index % idsPerSegment) * Long.BYTES);
+    }
+
+    long getLong(long index, int fieldOffset) {
+        return recordSegment(index).getLong(recordBase(index) + fieldOffset);
+    }
+
+    /**
+     * Читает цвет, записанный порядковым номером.
+     * @throws UncheckedIOException если номер не соответствует ни одному цвету.
+     */
+    Color getColor(long index, int fieldOffset) {
+        try {
+            return PersonCodec.color(getByte(index, fieldOffset));
+        } catch (IllegalArgumentException e) {
+            throw corrupt(e);
+        }
+    }
+
+    /**
+     * Читает страну, записанную порядковым номером.
+     * @throws UncheckedIOException если номер не соответствует ни одной стране.
+     */
+    Country getCountry(long index, int fieldOffset) {
+        try {
+            return PersonCodec.country(getByte(index, fieldOffset));
+        } catch (IllegalArgumentException e) {
+            throw corrupt(e);
+        }
+    }
+
+    private static UncheckedIOException corrupt(IllegalArgumentException e) {
+        return new UncheckedIOException(new IOException("Некорректные данные элемента: " + e.getMessage(), e));
+    }
+
+    private byte getByte(long index, int fieldOffset) {
+        return recordSegment(index).get(recordBase(index) + fieldOffset);
+    }
+
+    private ByteBuffer recordSegment(long index) {
+        return recordSegments[(int) (index / recordsPerSegment)];
+    }
+
+    private int recordBase(long index) {
+        return (int) (index % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    /**
+     * Полностью декодирует запись.
+     * @param index Номер записи.
+     * @return Новый объект Person.
+     * @throws UncheckedIOException если запись содержит некорректные данные.
+     */
+    Person decode(long index) {
+        try {
+            return BinaryFileManager.decode(recordSegment(index), recordBase(index), this::string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Читает строку из таблицы строк.
+     * @param index Номер строки или -1.
+     * @return Строка или null для -1.
+     */
+    private String string(int index) {
+        if (index < 0) {
+            return null;
+        }
+        // Смещения в таблице абсолютные, а отображение начинается сразу после заголовка
+        long position = ByteBuffer.wrap(read(Integer.BYTES + (long) Long.BYTES * index, Long.BYTES)).getLong() - HEADER_SIZE;
+        int length = ByteBuffer.wrap(read(position, Integer.BYTES)).getInt();
+        return new String(read(position + Integer.BYTES, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Читает байты таблицы строк, в том числе на стыке двух сегментов.
+     */
+    private byte[] read(long position, int length) {
+        byte[] result = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            ByteBuffer segment = stringSegments[(int) (current / stringSegmentSize)].duplicate();
+            segment.position((int) (current % stringSegmentSize));
+            int chunk = Math.min(length - copied, segment.remaining());
+            segment.get(result, copied, chunk);
+            copied += chunk;
+        }
+        return result;
+    }
+}
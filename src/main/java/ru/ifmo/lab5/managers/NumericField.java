@@ -0,0 +1,112 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Person;
+
+/**
+ * Числовые поля элемента коллекции, по которым считаются сумма, минимум, максимум и гистограмма.
+ * Рост - целое число, остальные поля - дробные. Поля местоположения есть не у каждого элемента.
+ */
+public enum NumericField {
+    HEIGHT("height"),
+    COORDINATES_X("coordinates.x"),
+    COORDINATES_Y("coordinates.y"),
+    LOCATION_X("location.x"),
+    LOCATION_Y("location.y"),
+    LOCATION_Z("location.z");
+
+    private final String fieldName;
+
+    NumericField(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    /**
+     * @return Имя поля, как оно вводится в командах.
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return true для целочисленного поля (значения берутся через {@link #longValue}).
+     */
+    public boolean isInteger() {
+        return this == HEIGHT;
+    }
+
+    /**
+     * Ищет поле по имени без учета регистра.
+     * @param name Имя поля, например {@code coordinates.x}.
+     * @return Поле или null, если имя не распознано.
+     */
+    public static NumericField fromName(String name) {
+        for (NumericField field : values()) {
+            if (field.fieldName.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Имена всех полей через запятую, для сообщений об ошибках и справки.
+     */
+    public static String names() {
+        StringBuilder names = new StringBuilder();
+        for (NumericField field : values()) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(field.fieldName);
+        }
+        return names.toString();
+    }
+
+    /**
+     * @param person Элемент коллекции.
+     * @return true, если у элемента есть значение этого поля.
+     */
+    public boolean isPresent(Person person) {
+        switch (this) {
+            case HEIGHT:
+                return true;
+            case COORDINATES_X:
+            case COORDINATES_Y:
+                return person.getCoordinates() != null;
+            default:
+                return person.getLocation() != null;
+        }
+    }
+
+    /**
+     * @param person Элемент коллекции, у которого поле есть.
+     * @return Значение целочисленного поля.
+     */
+    public long longValue(Person person) {
+        if (this != HEIGHT) {
+            throw new IllegalStateException("Поле " + fieldName + " не целочисленное");
+        }
+        return person.getHeight();
+    }
+
+    /**
+     * @param person Элемент коллекции, у которого поле есть.
+     * @return Значение поля как double.
+     */
+    public double doubleValue(Person person) {
+        switch (this) {
+            case HEIGHT:
+                return person.getHeight();
+            case COORDINATES_X:
+                return person.getCoordinates().getX();
+            case COORDINATES_Y:
+                return person.getCoordinates().getY();
+            case LOCATION_X:
+                return person.getLocation().getX();
+            case LOCATION_Y:
+                return person.getLocation().getY();
+            default:
+                return person.getLocation().getZ();
+        }
+    }
+}
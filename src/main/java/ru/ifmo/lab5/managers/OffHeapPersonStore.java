@@ -0,0 +1,506 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.SortedListView;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Хранилище вне кучи: элементы лежат в прямых (direct) {@link ByteBuffer} и не нагружают сборщик мусора.
+ * <p>
+ * Каждый элемент занимает ячейку фиксированной ширины {@value BinaryFileManager#RECORD_SIZE} байт
+ * в формате записи двоичного снимка ({@link BinaryFileManager#encode}/{@link BinaryFileManager#decode}).
+ * Ячейки выделяются блоками по {@value #SLOTS_PER_CHUNK}; ячейки удаленных элементов запоминаются
+ * и занимаются новыми элементами в первую очередь. Имена людей и местоположений хранятся
+ * в области строк вне кучи (длина int + байты UTF-8), ячейка ссылается на строку по смещению (-1 для null).
+ * Место строк удаленных и измененных элементов освобождается уплотнением области,
+ * когда мусора в ней становится больше половины.
+ * <p>
+ * В куче остаются только примитивный индекс (упорядоченные ID и номера ячеек) и стек свободных ячеек,
+ * без объектов на каждый элемент. Объекты Person собираются из ячейки при каждом обращении.
+ * Не потокобезопасно: {@link CollectionManager} обращается к нему только под своей блокировкой.
+ */
+public class OffHeapPersonStore implements PersonStore {
+    private static final int SLOT_SIZE = BinaryFileManager.RECORD_SIZE;
+    private static final int CHUNK_SHIFT = 16;
+    private static final int SLOTS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int INITIAL_ARENA_SIZE = 1 << 16;
+    /** Количество удаленных элементов (или байт мусора в области строк), ниже которого уплотнение не выполняется. */
+    private static final int MIN_COMPACTION = 1024;
+    private static final int NO_SLOT = -1;
+
+    /** Блоки ячеек, ячейка n лежит в блоке {@code n >>> CHUNK_SHIFT}. */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int allocatedSlots;
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+
+    /** ID по возрастанию и номера их ячеек; у удаленного элемента номер ячейки {@value #NO_SLOT}. */
+    private long[] ids = new long[0];
+    private int[] slots = new int[0];
+    private int length;
+    private int deleted;
+
+    private ByteBuffer arena = ByteBuffer.allocateDirect(INITIAL_ARENA_SIZE);
+    private long arenaGarbage;
+
+    @Override
+    public void replaceAll(TreeSet<Person> persons) {
+        clear();
+        ensureIndexCapacity(persons.size());
+        for (Person person : persons) {
+            ids[length] = person.getId();
+            slots[length] = writeNew(person);
+            length++;
+        }
+    }
+
+    @Override
+    public boolean add(Person person) {
+        long id = person.getId();
+        if (length == 0 || id > ids[length - 1]) {
+            ensureIndexCapacity(length + 1);
+            ids[length] = id;
+            slots[length] = writeNew(person);
+            length++;
+            return true;
+        }
+        int index = find(id);
+        if (index >= 0) {
+            if (slots[index] != NO_SLOT) {
+                return false;
+            }
+            slots[index] = writeNew(person);
+            deleted--;
+            return true;
+        }
+        int insertion = -index - 1;
+        ensureIndexCapacity(length + 1);
+        System.arraycopy(ids, insertion, ids, insertion + 1, length - insertion);
+        System.arraycopy(slots, insertion, slots, insertion + 1, length - insertion);
+        length++;
+        ids[insertion] = id;
+        slots[insertion] = writeNew(person);
+        return true;
+    }
+
+    @Override
+    public Person replace(Person person) {
+        int index = find(person.getId());
+        if (index < 0 || slots[index] == NO_SLOT) {
+            return null;
+        }
+        int slot = slots[index];
+        Person previous = materialize(slot);
+        releaseStrings(slot);
+        write(slot, person);
+        compactArenaIfNeeded();
+        return previous;
+    }
+
+    @Override
+    public Person get(long id) {
+        int index = find(id);
+        return index < 0 || slots[index] == NO_SLOT ? null : materialize(slots[index]);
+    }
+
+    @Override
+    public Person remove(long id) {
+        int index = find(id);
+        if (index < 0 || slots[index] == NO_SLOT) {
+            return null;
+        }
+        Person removed = materialize(slots[index]);
+        freeSlot(slots[index]);
+        slots[index] = NO_SLOT;
+        deleted++;
+        if (deleted >= MIN_COMPACTION && deleted > length / 2) {
+            compactIndex();
+        }
+        compactArenaIfNeeded();
+        return removed;
+    }
+
+    @Override
+    public List<Person> removeGreater(long id) {
+        int from = lowerBound(id == Long.MAX_VALUE ? id : id + 1);
+        List<Person> removed = release(from, length);
+        length = from;
+        compactArenaIfNeeded();
+        return removed;
+    }
+
+    @Override
+    public List<Person> removeLower(long id) {
+        int to = lowerBound(id);
+        List<Person> removed = release(0, to);
+        System.arraycopy(ids, to, ids, 0, length - to);
+        System.arraycopy(slots, to, slots, 0, length - to);
+        length -= to;
+        compactArenaIfNeeded();
+        return removed;
+    }
+
+    /**
+     * Собирает элементы диапазона индекса и освобождает их ячейки. Сам диапазон из индекса не удаляется.
+     */
+    private List<Person> release(int from, int to) {
+        List<Person> removed = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (slots[i] == NO_SLOT) {
+                deleted--;
+            } else {
+                removed.add(materialize(slots[i]));
+                freeSlot(slots[i]);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        // Память блоков освободится вместе с буферами при сборке мусора
+        chunks.clear();
+        allocatedSlots = 0;
+        freeCount = 0;
+        length = 0;
+        deleted = 0;
+        arena = ByteBuffer.allocateDirect(INITIAL_ARENA_SIZE);
+        arenaGarbage = 0;
+    }
+
+    @Override
+    public Person first() {
+        for (int i = 0; i < length; i++) {
+            if (slots[i] != NO_SLOT) {
+                return materialize(slots[i]);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Person last() {
+        for (int i = length - 1; i >= 0; i--) {
+            if (slots[i] != NO_SLOT) {
+                return materialize(slots[i]);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return length - deleted;
+    }
+
+    @Override
+    public Iterator<Person> iteratorFrom(long id) {
+        return new SlotIterator(lowerBound(id), slot -> true);
+    }
+
+    @Override
+    public TreeSet<Person> snapshot() {
+        List<Person> persons = new ArrayList<>(size());
+        iteratorFrom(Long.MIN_VALUE).forEachRemaining(persons::add);
+        TreeSet<Person> snapshot = new TreeSet<>();
+        snapshot.addAll(new SortedListView<>(persons));
+        return snapshot;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return false;
+    }
+
+    @Override
+    public String getTypeName() {
+        return OffHeapPersonStore.class.getName();
+    }
+
+    @Override
+    public boolean retainsElements() {
+        return false;
+    }
+
+    /**
+     * Читает цвет волос прямо из ячейки и собирает объекты только для подходящих элементов.
+     */
+    @Override
+    public Iterator<Person> iteratorHairColorLessThan(Color color) {
+        int bound = color.ordinal();
+        return new SlotIterator(0, slot -> {
+            byte hairColor = chunk(slot).get(base(slot) + BinaryFileManager.OFFSET_HAIR_COLOR);
+            return hairColor >= 0 && hairColor < bound;
+        });
+    }
+
+    /**
+     * Читает рост прямо из ячеек, не собирая объекты.
+     */
+    @Override
+    public long[] longColumn(NumericField field) {
+        if (!field.isInteger()) {
+            throw new IllegalArgumentException("Поле " + field.getFieldName() + " не целочисленное");
+        }
+        long[] column = new long[length - deleted];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            int slot = slots[i];
+            if (slot != NO_SLOT) {
+                column[count++] = chunk(slot).getLong(base(slot) + BinaryFileManager.OFFSET_HEIGHT);
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Читает поле прямо из ячеек, пропуская элементы без этого поля.
+     */
+    @Override
+    public double[] doubleColumn(NumericField field) {
+        int required = field == NumericField.HEIGHT ? 0
+                : field == NumericField.COORDINATES_X || field == NumericField.COORDINATES_Y
+                ? BinaryFileManager.FLAG_COORDINATES : BinaryFileManager.FLAG_LOCATION;
+        double[] column = new double[length - deleted];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            int slot = slots[i];
+            if (slot == NO_SLOT) {
+                continue;
+            }
+            ByteBuffer chunk = chunk(slot);
+            int base = base(slot);
+            if ((chunk.get(base + BinaryFileManager.OFFSET_FLAGS) & required) != required) {
+                continue;
+            }
+            switch (field) {
+                case HEIGHT:
+                    column[count++] = chunk.getLong(base + BinaryFileManager.OFFSET_HEIGHT);
+                    break;
+                case COORDINATES_X:
+                    column[count++] = chunk.getDouble(base + BinaryFileManager.OFFSET_COORDINATES_X);
+                    break;
+                case COORDINATES_Y:
+                    column[count++] = chunk.getFloat(base + BinaryFileManager.OFFSET_COORDINATES_Y);
+                    break;
+                case LOCATION_X:
+                    column[count++] = chunk.getFloat(base + BinaryFileManager.OFFSET_LOCATION_X);
+                    break;
+                case LOCATION_Y:
+                    column[count++] = chunk.getDouble(base + BinaryFileManager.OFFSET_LOCATION_Y);
+                    break;
+                default:
+                    column[count++] = chunk.getDouble(base + BinaryFileManager.OFFSET_LOCATION_Z);
+                    break;
+            }
+        }
+        return count == column.length ? column : Arrays.copyOf(column, count);
+    }
+
+    /**
+     * Обход индекса по возрастанию ID, пропускающий удаленные элементы и ячейки, не подходящие под условие.
+     */
+    private final class SlotIterator implements Iterator<Person> {
+        private final IntPredicate filter;
+        private int next;
+
+        SlotIterator(int from, IntPredicate filter) {
+            this.filter = filter;
+            this.next = advance(from);
+        }
+
+        private int advance(int index) {
+            while (index < length && (slots[index] == NO_SLOT || !filter.test(slots[index]))) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < length;
+        }
+
+        @Override
+        public Person next() {
+            if (next >= length) {
+                throw new NoSuchElementException();
+            }
+            Person person = materialize(slots[next]);
+            next = advance(next + 1);
+            return person;
+        }
+    }
+
+    private int find(long id) {
+        return Arrays.binarySearch(ids, 0, length, id);
+    }
+
+    private int lowerBound(long id) {
+        int index = find(id);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks.get(slot >>> CHUNK_SHIFT);
+    }
+
+    private static int base(int slot) {
+        return (slot & (SLOTS_PER_CHUNK - 1)) * SLOT_SIZE;
+    }
+
+    private int writeNew(Person person) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (allocatedSlots == chunks.size() * SLOTS_PER_CHUNK) {
+                chunks.add(ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * SLOT_SIZE));
+            }
+            slot = allocatedSlots++;
+        }
+        write(slot, person);
+        return slot;
+    }
+
+    private void write(int slot, Person person) {
+        BinaryFileManager.encode(chunk(slot), base(slot), person, this::storeString);
+    }
+
+    private Person materialize(int slot) {
+        try {
+            return BinaryFileManager.decode(chunk(slot), base(slot), this::loadString);
+        } catch (IOException e) {
+            throw new IllegalStateException("Ячейка " + slot + " хранилища повреждена: " + e.getMessage(), e);
+        }
+    }
+
+    private void freeSlot(int slot) {
+        releaseStrings(slot);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void releaseStrings(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        releaseString(chunk.getInt(base + BinaryFileManager.OFFSET_NAME));
+        if ((chunk.get(base + BinaryFileManager.OFFSET_FLAGS) & BinaryFileManager.FLAG_LOCATION) != 0) {
+            releaseString(chunk.getInt(base + BinaryFileManager.OFFSET_LOCATION_NAME));
+        }
+    }
+
+    private int storeString(String value) {
+        if (value == null) {
+            return -1;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int required = Integer.BYTES + bytes.length;
+        if (arena.remaining() < required) {
+            long capacity = Math.max((long) arena.capacity() * 2, (long) arena.position() + required);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Область строк хранилища превысила 2 ГБ");
+            }
+            ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+            arena.flip();
+            grown.put(arena);
+            arena = grown;
+        }
+        int offset = arena.position();
+        arena.putInt(bytes.length).put(bytes);
+        return offset;
+    }
+
+    private String loadString(int offset) {
+        if (offset < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[arena.getInt(offset)];
+        ByteBuffer view = arena.duplicate();
+        view.position(offset + Integer.BYTES);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void releaseString(int offset) {
+        if (offset >= 0) {
+            arenaGarbage += Integer.BYTES + arena.getInt(offset);
+        }
+    }
+
+    /**
+     * Переписывает строки живых элементов в новую область, если больше половины старой занято мусором.
+     */
+    private void compactArenaIfNeeded() {
+        if (arenaGarbage < MIN_COMPACTION || arenaGarbage * 2 <= arena.position()) {
+            return;
+        }
+        ByteBuffer old = arena;
+        long live = old.position() - arenaGarbage;
+        arena = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, Math.max(INITIAL_ARENA_SIZE, live * 2)));
+        arenaGarbage = 0;
+        for (int i = 0; i < length; i++) {
+            int slot = slots[i];
+            if (slot == NO_SLOT) {
+                continue;
+            }
+            ByteBuffer chunk = chunk(slot);
+            int base = base(slot);
+            chunk.putInt(base + BinaryFileManager.OFFSET_NAME, moveString(old, chunk.getInt(base + BinaryFileManager.OFFSET_NAME)));
+            if ((chunk.get(base + BinaryFileManager.OFFSET_FLAGS) & BinaryFileManager.FLAG_LOCATION) != 0) {
+                chunk.putInt(base + BinaryFileManager.OFFSET_LOCATION_NAME,
+                        moveString(old, chunk.getInt(base + BinaryFileManager.OFFSET_LOCATION_NAME)));
+            }
+        }
+    }
+
+    private int moveString(ByteBuffer from, int offset) {
+        if (offset < 0) {
+            return offset;
+        }
+        int size = Integer.BYTES + from.getInt(offset);
+        ByteBuffer source = from.duplicate();
+        source.position(offset).limit(offset + size);
+        int moved = arena.position();
+        arena.put(source);
+        return moved;
+    }
+
+    /**
+     * Удаляет из индекса записи удаленных элементов, сохраняя порядок остальных.
+     */
+    private void compactIndex() {
+        int target = 0;
+        for (int i = 0; i < length; i++) {
+            if (slots[i] != NO_SLOT) {
+                ids[target] = ids[i];
+                slots[target] = slots[i];
+                target++;
+            }
+        }
+        length = target;
+        deleted = 0;
+    }
+
+    private void ensureIndexCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, newCapacity);
+        slots = Arrays.copyOf(slots, newCapacity);
+    }
+}
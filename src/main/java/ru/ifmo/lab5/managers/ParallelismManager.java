@@ -0,0 +1,90 @@
+package ru.ifmo.lab5.managers;
+
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Отдельный пул потоков для полных проходов по коллекции: выписывания столбцов значений
+ * и агрегатных вычислений над ними.
+ * Пул не общий ({@link ForkJoinPool#commonPool()}), поэтому проходы не конкурируют с другими задачами JVM,
+ * а число потоков задается переменной окружения PERSON_COLLECTION_PARALLELISM и меняется командой set.
+ * При параллелизме 1 пул не создается, и все проходы выполняются в вызывающем потоке.
+ */
+public class ParallelismManager implements Closeable {
+    /** Наибольшее допустимое число потоков. */
+    public static final int MAX_PARALLELISM = 256;
+
+    private int parallelism;
+    private volatile ForkJoinPool pool;
+
+    /**
+     * @param parallelism Число потоков, от 1 до {@value #MAX_PARALLELISM}.
+     * @throws IllegalArgumentException если число потоков вне допустимого диапазона.
+     */
+    public ParallelismManager(int parallelism) {
+        setParallelism(parallelism);
+    }
+
+    /**
+     * @return Параллелизм по умолчанию - число доступных процессоров.
+     */
+    public static int defaultParallelism() {
+        return Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM);
+    }
+
+    /**
+     * @return Текущее число потоков для проходов по коллекции.
+     */
+    public synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Меняет число потоков. Новый пул создается сразу; прежний завершается после того,
+     * как доработают уже начатые в нем проходы.
+     * @param parallelism Число потоков, от 1 до {@value #MAX_PARALLELISM}.
+     * @throws IllegalArgumentException если число потоков вне допустимого диапазона.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1 || parallelism > MAX_PARALLELISM) {
+            throw new IllegalArgumentException("Параллелизм должен быть от 1 до " + MAX_PARALLELISM);
+        }
+        if (parallelism == this.parallelism) {
+            return;
+        }
+        ForkJoinPool previous = pool;
+        pool = parallelism == 1 ? null : new ForkJoinPool(parallelism, ParallelismManager::newThread, null, false);
+        this.parallelism = parallelism;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * @return Пул для параллельных проходов или null, если проходы выполняются последовательно.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("person-scan-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Завершает пул. Начатые проходы дорабатывают, новые выполняются последовательно.
+     */
+    @Override
+    public synchronized void close() {
+        ForkJoinPool previous = pool;
+        pool = null;
+        parallelism = 1;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+}
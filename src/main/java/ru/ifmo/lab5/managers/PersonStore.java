@@ -0,0 +1,174 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Person;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.stream.StreamSupport;
+
+/**
+ * Хранилище элементов коллекции, упорядоченное по ID.
+ * {@link CollectionManager} держит в нем элементы, а индексы по цвету и статистику ведет сам.
+ * Изменяющие методы вызываются менеджером под его блокировкой записи, поэтому между собой не пересекаются.
+ * Читающие методы хранилища, для которого {@link #isConcurrent()} возвращает true,
+ * могут вызываться без блокировки параллельно с изменениями.
+ */
+public interface PersonStore {
+
+    /**
+     * Заменяет содержимое хранилища элементами упорядоченной коллекции.
+     * @param persons Новые элементы. Хранилище может использовать переданный объект без копирования.
+     */
+    void replaceAll(TreeSet<Person> persons);
+
+    /**
+     * Добавляет элемент.
+     * @param person Элемент с уже установленным ID.
+     * @return false, если элемент с таким ID уже есть (хранилище не изменяется).
+     */
+    boolean add(Person person);
+
+    /**
+     * Заменяет элемент с тем же ID.
+     * @param person Новая версия элемента.
+     * @return Прежняя версия или null, если элемента с таким ID не было (тогда ничего не добавляется).
+     */
+    Person replace(Person person);
+
+    /**
+     * @param id ID элемента.
+     * @return Элемент или null.
+     */
+    Person get(long id);
+
+    /**
+     * Удаляет элемент по ID.
+     * @param id ID элемента.
+     * @return Удаленный элемент или null.
+     */
+    Person remove(long id);
+
+    /**
+     * Удаляет все элементы с ID больше указанного.
+     * @param id Граница (не включается).
+     * @return Удаленные элементы.
+     */
+    List<Person> removeGreater(long id);
+
+    /**
+     * Удаляет все элементы с ID меньше указанного.
+     * @param id Граница (не включается).
+     * @return Удаленные элементы.
+     */
+    List<Person> removeLower(long id);
+
+    /**
+     * Удаляет все элементы.
+     */
+    void clear();
+
+    /**
+     * @return Элемент с минимальным ID или null для пустого хранилища.
+     */
+    Person first();
+
+    /**
+     * @return Элемент с максимальным ID или null для пустого хранилища.
+     */
+    Person last();
+
+    int size();
+
+    /**
+     * @param id ID, с которого начинается обход (включительно).
+     * @return Итератор по элементам с ID не меньше указанного, по возрастанию ID.
+     */
+    Iterator<Person> iteratorFrom(long id);
+
+    /**
+     * Разделяемый обход всех элементов по возрастанию ID для параллельных проходов.
+     * Реализация по умолчанию отдает элементы порциями из итератора; хранилище на сбалансированной
+     * структуре делит обход на примерно равные половины.
+     * @return Сплитератор по всем элементам.
+     */
+    default Spliterator<Person> spliterator() {
+        return Spliterators.spliterator(iteratorFrom(0), size(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    /**
+     * @return Независимая копия содержимого.
+     */
+    TreeSet<Person> snapshot();
+
+    /**
+     * @return true, если читающие методы безопасны без внешней блокировки.
+     */
+    boolean isConcurrent();
+
+    /**
+     * @return Название структуры данных для команды info.
+     */
+    String getTypeName();
+
+    /**
+     * Держит ли хранилище сами объекты Person. Хранилище, которое собирает объект заново при каждом обращении,
+     * возвращает false: тогда {@link CollectionManager} не хранит ссылки на элементы в индексах по цвету,
+     * а выборки по цвету выполняет через {@link #iteratorHairColorLessThan}.
+     * @return true, если {@link #get} возвращает один и тот же сохраненный объект.
+     */
+    default boolean retainsElements() {
+        return true;
+    }
+
+    /**
+     * Обходит элементы, у которых цвет волос задан и объявлен в {@link Color} раньше указанного, по возрастанию ID.
+     * Реализация по умолчанию проверяет каждый элемент.
+     * @param color Эталонный цвет.
+     * @return Итератор по подходящим элементам.
+     */
+    default Iterator<Person> iteratorHairColorLessThan(Color color) {
+        Iterable<Person> all = () -> iteratorFrom(0);
+        return StreamSupport.stream(all.spliterator(), false)
+                .filter(person -> person.getHairColor() != null && person.getHairColor().compareTo(color) < 0)
+                .iterator();
+    }
+
+    /**
+     * Выписывает значения целочисленного поля всех элементов в массив для агрегатных вычислений.
+     * Реализация по умолчанию обходит элементы; хранилище, которое держит поле отдельным столбцом,
+     * копирует его напрямую.
+     * @param field Целочисленное поле.
+     * @return Значения поля по возрастанию ID.
+     */
+    default long[] longColumn(NumericField field) {
+        long[] column = new long[size()];
+        int count = 0;
+        for (Iterator<Person> iterator = iteratorFrom(0); iterator.hasNext() && count < column.length; ) {
+            column[count++] = field.longValue(iterator.next());
+        }
+        return count == column.length ? column : Arrays.copyOf(column, count);
+    }
+
+    /**
+     * Выписывает значения поля в массив для агрегатных вычислений. Элементы, у которых поля нет, пропускаются.
+     * @param field Поле.
+     * @return Значения поля по возрастанию ID.
+     */
+    default double[] doubleColumn(NumericField field) {
+        double[] column = new double[size()];
+        int count = 0;
+        for (Iterator<Person> iterator = iteratorFrom(0); iterator.hasNext() && count < column.length; ) {
+            Person person = iterator.next();
+            if (field.isPresent(person)) {
+                column[count++] = field.doubleValue(person);
+            }
+        }
+        return count == column.length ? column : Arrays.copyOf(column, count);
+    }
+}
@@ -0,0 +1,270 @@
+package ru.ifmo.lab5.managers;
+
+import jakarta.xml.bind.JAXBException;
+import ru.ifmo.lab5.model.Person;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Сохраняет коллекцию в файл синхронно, в фоне или периодически (автосохранение).
+ * <p>
+ * Снимок коллекции и отметка журнала берутся вместе под блокировкой чтения коллекции, после чего
+ * файл пишется без блокировок: изменения, сделанные во время записи, остаются в журнале.
+ * Сохранения выполняются строго по одному. Фоновые запросы, пришедшие во время сохранения,
+ * не ставятся в очередь, а объединяются в одно повторное сохранение после текущего.
+ * Если коллекция не менялась с последнего сохранения (см. {@link CollectionManager#getUnsavedChanges()}),
+ * файл не перезаписывается.
+ */
+public class SaveManager implements Closeable {
+    /** Сколько секунд {@link #close()} ждет завершения фонового сохранения. */
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final CollectionManager collectionManager;
+    private final FileManager fileManager;
+    private final JournalManager journalManager;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "person-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Держится на время записи файла, чтобы сохранения не пересекались. */
+    private final ReentrantLock saveLock = new ReentrantLock();
+
+    // Объединение фоновых запросов, защищено монитором this
+    private boolean backgroundRunning = false;
+    private boolean rerunRequested = false;
+    private boolean rerunIndent = false;
+    private boolean rerunForce = false;
+
+    // Ход текущего сохранения
+    private volatile boolean saving = false;
+    private volatile long elementsWritten;
+    private volatile long elementsTotal;
+    private volatile long startedNanos;
+    private volatile SaveResult lastResult;
+
+    /**
+     * Итог завершенного сохранения.
+     */
+    public static final class SaveResult {
+        private final boolean success;
+        private final boolean skipped;
+        private final long elements;
+        private final long bytes;
+        private final long durationMillis;
+        private final LocalDateTime finishedAt;
+        private final String error;
+
+        private SaveResult(boolean success, boolean skipped, long elements, long bytes, long durationMillis, String error) {
+            this.success = success;
+            this.skipped = skipped;
+            this.elements = elements;
+            this.bytes = bytes;
+            this.durationMillis = durationMillis;
+            this.finishedAt = LocalDateTime.now();
+            this.error = error;
+        }
+
+        public boolean isSuccess() { return success; }
+        /** @return true, если файл не перезаписывался, так как коллекция не менялась. */
+        public boolean isSkipped() { return skipped; }
+        public long getElements() { return elements; }
+        public long getBytes() { return bytes; }
+        public long getDurationMillis() { return durationMillis; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+    }
+
+    /**
+     * Состояние сохранения на момент запроса.
+     */
+    public static final class SaveStatus {
+        private final boolean saving;
+        private final boolean rerunPending;
+        private final long elementsWritten;
+        private final long elementsTotal;
+        private final long elapsedMillis;
+        private final SaveResult lastResult;
+
+        private SaveStatus(boolean saving, boolean rerunPending, long elementsWritten, long elementsTotal,
+                           long elapsedMillis, SaveResult lastResult) {
+            this.saving = saving;
+            this.rerunPending = rerunPending;
+            this.elementsWritten = elementsWritten;
+            this.elementsTotal = elementsTotal;
+            this.elapsedMillis = elapsedMillis;
+            this.lastResult = lastResult;
+        }
+
+        /** @return true, если сохранение выполняется прямо сейчас. */
+        public boolean isSaving() { return saving; }
+        /** @return true, если после текущего сохранения запланировано повторное. */
+        public boolean isRerunPending() { return rerunPending; }
+        public long getElementsWritten() { return elementsWritten; }
+        public long getElementsTotal() { return elementsTotal; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        /** @return Итог последнего завершенного сохранения или null, если сохранений еще не было. */
+        public SaveResult getLastResult() { return lastResult; }
+    }
+
+    /**
+     * Конструктор.
+     * @param collectionManager Менеджер сохраняемой коллекции.
+     * @param fileManager Хранилище коллекции в файле.
+     * @param journalManager Журнал изменений, из которого удаляются сохраненные записи.
+     */
+    public SaveManager(CollectionManager collectionManager, FileManager fileManager, JournalManager journalManager) {
+        this.collectionManager = collectionManager;
+        this.fileManager = fileManager;
+        this.journalManager = journalManager;
+    }
+
+    /**
+     * Сохраняет коллекцию в текущем потоке. Если идет фоновое сохранение, сначала дожидается его.
+     * @param indent Добавлять ли переводы строк и отступы.
+     * @param force Перезаписать файл, даже если коллекция не менялась.
+     * @return Итог сохранения.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если произошла ошибка при преобразовании в XML.
+     * @throws SecurityException если нет прав на запись в файл.
+     */
+    public SaveResult save(boolean indent, boolean force) throws IOException, JAXBException, SecurityException {
+        saveLock.lock();
+        try {
+            return saveLocked(indent, force);
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * Запускает сохранение в фоне.
+     * Если фоновое сохранение уже идет, запрос объединяется с другими в одно повторное сохранение после него.
+     * @param indent Добавлять ли переводы строк и отступы.
+     * @param force Перезаписать файл, даже если коллекция не менялась.
+     * @return true, если сохранение запущено, false, если запрос объединен с уже идущим.
+     */
+    public synchronized boolean saveAsync(boolean indent, boolean force) {
+        if (backgroundRunning) {
+            rerunRequested = true;
+            rerunIndent |= indent;
+            rerunForce |= force;
+            return false;
+        }
+        backgroundRunning = true;
+        executor.execute(() -> runBackground(indent, force));
+        return true;
+    }
+
+    /**
+     * Включает периодическое фоновое сохранение.
+     * @param intervalSeconds Интервал между сохранениями в секундах, больше нуля.
+     */
+    public void startAutosave(long intervalSeconds) {
+        executor.scheduleWithFixedDelay(() -> saveAsync(false, false), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Возвращает состояние текущего и итог последнего сохранения.
+     * @return Состояние сохранения.
+     */
+    public SaveStatus getStatus() {
+        boolean rerunPending;
+        synchronized (this) {
+            rerunPending = rerunRequested;
+        }
+        boolean active = saving;
+        long elapsed = active ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos) : 0;
+        return new SaveStatus(active, rerunPending, elementsWritten, elementsTotal, elapsed, lastResult);
+    }
+
+    private void runBackground(boolean indent, boolean force) {
+        while (true) {
+            try {
+                save(indent, force);
+            } catch (IOException | JAXBException | RuntimeException e) {
+                // Итог с ошибкой уже записан в lastResult и виден через save_status
+            }
+            synchronized (this) {
+                if (!rerunRequested) {
+                    backgroundRunning = false;
+                    return;
+                }
+                indent = rerunIndent;
+                force = rerunForce;
+                rerunRequested = false;
+                rerunIndent = false;
+                rerunForce = false;
+            }
+        }
+    }
+
+    private SaveResult saveLocked(boolean indent, boolean force) throws IOException, JAXBException, SecurityException {
+        Path filePath = Paths.get(fileManager.getFilePath());
+        if (!force && collectionManager.getUnsavedChanges() == 0 && Files.exists(filePath)) {
+            // Изменение, сделанное сразу после проверки, попадет в следующее сохранение
+            return new SaveResult(true, true, collectionManager.size(), 0, 0, null);
+        }
+        long[] mark = new long[1];
+        long[] modificationCount = new long[1];
+        long started = System.nanoTime();
+        startedNanos = started;
+        elementsWritten = 0;
+        elementsTotal = 0;
+        saving = true;
+        try {
+            TreeSet<Person> snapshot = collectionManager.snapshot(() -> {
+                mark[0] = journalManager.mark();
+                modificationCount[0] = collectionManager.getModificationCount();
+            });
+            elementsTotal = snapshot.size();
+            fileManager.save(snapshot, indent, written -> elementsWritten = written);
+            // Снимок содержит все записи журнала до отметки, их можно удалить
+            journalManager.checkpoint(mark[0]);
+            collectionManager.markSaved(modificationCount[0]);
+            long bytes = Files.size(filePath);
+            lastResult = new SaveResult(true, false, snapshot.size(), bytes, elapsedMillis(started), null);
+            return lastResult;
+        } catch (IOException | JAXBException | RuntimeException e) {
+            lastResult = new SaveResult(false, false, elementsWritten, 0, elapsedMillis(started),
+                    e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            saving = false;
+        }
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    /**
+     * Останавливает автосохранение и ждет завершения уже запущенных фоновых сохранений
+     * не дольше {@value #CLOSE_TIMEOUT_SECONDS} с. Если сохранение не успело завершиться или ожидание
+     * прервано, метод сообщает об этом и возвращает управление: поток сохранения - демон и будет
+     * остановлен при выходе, а файл коллекции при этом не пострадает, так как записывается атомарно.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Фоновое сохранение не завершилось за " + CLOSE_TIMEOUT_SECONDS
+                        + " с и будет прервано. Файл коллекции останется прежним, изменения сохранены в журнале.");
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Ожидание фонового сохранения прервано. Файл коллекции останется прежним, изменения сохранены в журнале.");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,24 +1,84 @@
 package ru.ifmo.lab5.managers;
 
 import ru.ifmo.lab5.commands.Command;
+import ru.ifmo.lab5.util.CommandLine;
 import ru.ifmo.lab5.util.CommandResult;
 import ru.ifmo.lab5.util.CommandStatus;
 import ru.ifmo.lab5.util.ScriptInputProvider;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Scanner;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Выполняет команды из скрипт-файла.
  * Управляет стеком источников ввода в {@link UserInputHandler} для поддержки вложенных скриптов.
+ * <p>
+ * Скрипт читается и разбирается один раз: каждая строка с командой заранее делится на имя и аргументы,
+ * а сама команда находится в {@link CommandManager} по имени при выполнении строки. Разобранный скрипт кэшируется по каноническому пути
+ * и используется повторно, пока у файла не изменились время изменения и размер. Правка, не изменившая
+ * ни размер, ни время изменения (в пределах его точности в файловой системе), не будет замечена.
  */
 public class ScriptRunner {
+    /** Сколько разобранных скриптов хранится одновременно; дольше всех не запускавшиеся вытесняются. */
+    private static final int CACHE_CAPACITY = 64;
+
     private final CommandManager commandManager;
     private final UserInputHandler userInputHandler;
     private final Set<String> runningScripts = new HashSet<>();
+    private final Map<String, CompiledScript> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    /**
+     * Строка скрипта с командой, разобранная заранее.
+     */
+    private static final class Instruction {
+        private final String text;
+        private final String commandName;
+        private final String arguments;
+
+        Instruction(String text, CommandLine commandLine) {
+            this.text = text;
+            this.commandName = commandLine.getName();
+            this.arguments = commandLine.getArguments();
+        }
+    }
+
+    /**
+     * Прочитанный и разобранный скрипт вместе с признаками версии файла, из которой он получен.
+     */
+    private static final class CompiledScript {
+        private final long lastModified;
+        private final long size;
+        /** Все строки файла: из них же команды читают свой ввод. */
+        private final List<String> lines;
+        /** Команда для каждой строки или null для пустых строк и комментариев. */
+        private final Instruction[] instructions;
+
+        CompiledScript(long lastModified, long size, List<String> lines, Instruction[] instructions) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.lines = lines;
+            this.instructions = instructions;
+        }
+    }
 
     /**
      * Конструктор.
@@ -43,35 +103,34 @@ public class ScriptRunner {
             return;
         }
 
-        if (!new File(absolutePath).exists() || !new File(absolutePath).isFile() || !new File(absolutePath).canRead()) {
-            System.err.println("Файл скрипта не найден, не является файлом или недоступен для чтения: " + absolutePath);
+        if (runningScripts.contains(absolutePath)) {
+            System.err.println("Обнаружена рекурсия! Скрипт " + absolutePath + " уже выполняется.");
             return;
         }
 
-        if (runningScripts.contains(absolutePath)) {
-            System.err.println("Обнаружена рекурсия! Скрипт " + absolutePath + " уже выполняется.");
+        CompiledScript script;
+        try {
+            script = compile(absolutePath);
+        } catch (IOException | SecurityException e) {
+            System.err.println("Файл скрипта не найден, не является файлом или недоступен для чтения: " + absolutePath);
             return;
         }
         runningScripts.add(absolutePath);
 
         System.out.println("--- Начало выполнения скрипта: " + absolutePath + " ---");
-        try (Scanner scriptScanner = new Scanner(new File(filePath), "UTF-8")) {
-
-            userInputHandler.pushInputProvider(new ScriptInputProvider(scriptScanner));
-
-            while (true) { // Бесконечный цикл, который прервется по EndOfFileException
-                String line = scriptScanner.nextLine().trim();
-                if (line.isEmpty() || line.startsWith("#")) continue;
-
-                System.out.println("СКРИПТ> " + line);
+        ScriptInputProvider scriptInput = new ScriptInputProvider(script.lines);
+        userInputHandler.pushInputProvider(scriptInput);
+        try {
+            while (scriptInput.hasNextLine()) {
+                Instruction instruction = script.instructions[scriptInput.nextLineIndex()];
+                if (instruction == null) continue;
 
-                String[] parts = line.split("\\s+", 2);
-                String commandName = parts[0].toLowerCase();
-                String cmdArguments = parts.length > 1 ? parts[1] : null;
+                System.out.println("СКРИПТ> " + instruction.text);
 
-                Command command = commandManager.getCommand(commandName);
+                // Команда ищется при выполнении: разобранный скрипт переживает перерегистрацию команд
+                Command command = commandManager.getCommand(instruction.commandName);
                 if (command != null) {
-                    CommandResult result = command.execute(cmdArguments);
+                    CommandResult result = commandManager.execute(command, instruction.arguments);
                     if (result.getStatus() == CommandStatus.SUCCESS) {
                         if (result.getMessage() != null && !result.getMessage().isEmpty()) {
                             System.out.println(result.getMessage());
@@ -80,17 +139,57 @@ public class ScriptRunner {
                         System.err.println("Ошибка в скрипте: " + result.getMessage());
                     }
                 } else {
-                    System.err.println("Неизвестная команда в скрипте: " + commandName);
+                    System.err.println("Неизвестная команда в скрипте: " + instruction.commandName);
                 }
             }
-        } catch (FileNotFoundException e) {
-            System.err.println("Файл скрипта не найден: " + absolutePath);
-        } catch (java.util.NoSuchElementException e) {
-            // Конец файла достигнут - нормальное завершение
         } finally {
             runningScripts.remove(absolutePath);
             userInputHandler.popInputProvider();
             System.out.println("--- Завершение выполнения скрипта: " + absolutePath + " ---");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Сбрасывает кэш разобранных скриптов: следующие запуски прочитают файлы заново.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Возвращает разобранный скрипт из кэша, если файл не изменился, иначе читает и разбирает его заново.
+     * @param absolutePath Канонический путь к файлу.
+     * @return Разобранный скрипт.
+     * @throws IOException если файла нет, это не обычный файл или его не удалось прочитать.
+     */
+    private CompiledScript compile(String absolutePath) throws IOException {
+        Path path = Paths.get(absolutePath);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new IOException("Не является файлом: " + absolutePath);
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        CompiledScript cached = cache.get(absolutePath);
+        if (cached != null && cached.lastModified == lastModified && cached.size == attributes.size()) {
+            return cached;
+        }
+
+        List<String> lines = new ArrayList<>();
+        // Некорректные последовательности UTF-8 заменяются, а не прерывают чтение
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        Instruction[] instructions = new Instruction[lines.size()];
+        for (int i = 0; i < instructions.length; i++) {
+            String text = lines.get(i).trim();
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            CommandLine commandLine = CommandLine.parse(text);
+            instructions[i] = new Instruction(text, commandLine);
+        }
+        CompiledScript script = new CompiledScript(lastModified, attributes.size(), Collections.unmodifiableList(lines), instructions);
+        cache.put(absolutePath, script);
+        return script;
+    }
+}
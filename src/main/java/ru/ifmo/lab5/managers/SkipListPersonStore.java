@@ -0,0 +1,126 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Person;
+import ru.ifmo.lab5.util.SortedListView;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Хранилище на {@link ConcurrentSkipListMap} с ключом ID.
+ * Порядок по ID совпадает с естественным порядком Person, поэтому addIfMax/addIfMin и removeGreater/removeLower
+ * работают так же, как с {@link TreeSet}. Чтение не требует блокировки: обход слабо согласован,
+ * то есть не падает при параллельных изменениях и видит каждый элемент не более одного раза.
+ */
+public class SkipListPersonStore implements PersonStore {
+    private volatile ConcurrentSkipListMap<Long, Person> map = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void replaceAll(TreeSet<Person> persons) {
+        // Новая карта собирается целиком и публикуется одной записью, чтобы читатели не видели ее заполнение
+        ConcurrentSkipListMap<Long, Person> loaded = new ConcurrentSkipListMap<>();
+        for (Person person : persons) {
+            loaded.put(person.getId(), person);
+        }
+        map = loaded;
+    }
+
+    @Override
+    public boolean add(Person person) {
+        return map.putIfAbsent(person.getId(), person) == null;
+    }
+
+    @Override
+    public Person replace(Person person) {
+        return map.replace(person.getId(), person);
+    }
+
+    @Override
+    public Person get(long id) {
+        return map.get(id);
+    }
+
+    @Override
+    public Person remove(long id) {
+        return map.remove(id);
+    }
+
+    @Override
+    public List<Person> removeGreater(long id) {
+        return removeRange(map.tailMap(id, false));
+    }
+
+    @Override
+    public List<Person> removeLower(long id) {
+        return removeRange(map.headMap(id, false));
+    }
+
+    private List<Person> removeRange(ConcurrentNavigableMap<Long, Person> range) {
+        List<Person> removed = new ArrayList<>();
+        Iterator<Person> iterator = range.values().iterator();
+        while (iterator.hasNext()) {
+            removed.add(iterator.next());
+            iterator.remove();
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Person first() {
+        Map.Entry<Long, Person> entry = map.firstEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    public Person last() {
+        Map.Entry<Long, Person> entry = map.lastEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    public int size() {
+        // ConcurrentSkipListMap.size() обходит всю карту, но CollectionManager берет размер из своих счетчиков
+        return map.size();
+    }
+
+    @Override
+    public Iterator<Person> iteratorFrom(long id) {
+        return map.tailMap(id, true).values().iterator();
+    }
+
+    /**
+     * Сплитератор списка с пропусками делится по верхнему уровню индекса, то есть примерно пополам.
+     */
+    @Override
+    public Spliterator<Person> spliterator() {
+        return map.values().spliterator();
+    }
+
+    @Override
+    public TreeSet<Person> snapshot() {
+        TreeSet<Person> snapshot = new TreeSet<>();
+        snapshot.addAll(new SortedListView<>(new ArrayList<>(map.values())));
+        return snapshot;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public String getTypeName() {
+        return ConcurrentSkipListMap.class.getName();
+    }
+}
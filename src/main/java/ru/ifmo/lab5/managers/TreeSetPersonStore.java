@@ -0,0 +1,147 @@
+package ru.ifmo.lab5.managers;
+
+import ru.ifmo.lab5.model.Person;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Spliterator;
+import java.util.TreeSet;
+
+/**
+ * Хранилище на {@link TreeSet} с индексом по ID в {@link HashMap}.
+ * Не потокобезопасно: {@link CollectionManager} обращается к нему только под своей блокировкой.
+ */
+public class TreeSetPersonStore implements PersonStore {
+    private TreeSet<Person> collection = new TreeSet<>();
+    private final Map<Long, Person> idIndex = new HashMap<>();
+
+    @Override
+    public void replaceAll(TreeSet<Person> persons) {
+        collection = persons;
+        idIndex.clear();
+        for (Person person : collection) {
+            idIndex.put(person.getId(), person);
+        }
+    }
+
+    @Override
+    public boolean add(Person person) {
+        if (!collection.add(person)) {
+            return false;
+        }
+        idIndex.put(person.getId(), person);
+        return true;
+    }
+
+    @Override
+    public Person replace(Person person) {
+        Person previous = idIndex.get(person.getId());
+        if (previous != null) {
+            collection.remove(previous);
+            collection.add(person);
+            idIndex.put(person.getId(), person);
+        }
+        return previous;
+    }
+
+    @Override
+    public Person get(long id) {
+        return idIndex.get(id);
+    }
+
+    @Override
+    public Person remove(long id) {
+        Person removed = idIndex.remove(id);
+        if (removed != null) {
+            collection.remove(removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public List<Person> removeGreater(long id) {
+        return removeRange(collection.tailSet(probe(id), false));
+    }
+
+    @Override
+    public List<Person> removeLower(long id) {
+        return removeRange(collection.headSet(probe(id), false));
+    }
+
+    /**
+     * Удаляет элементы представления-диапазона (headSet/tailSet), сравнивая только удаляемые элементы.
+     */
+    private List<Person> removeRange(NavigableSet<Person> range) {
+        List<Person> removed = new ArrayList<>(range);
+        for (Person person : removed) {
+            idIndex.remove(person.getId());
+        }
+        range.clear();
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        collection.clear();
+        idIndex.clear();
+    }
+
+    @Override
+    public Person first() {
+        return collection.isEmpty() ? null : collection.first();
+    }
+
+    @Override
+    public Person last() {
+        return collection.isEmpty() ? null : collection.last();
+    }
+
+    @Override
+    public int size() {
+        return collection.size();
+    }
+
+    @Override
+    public Iterator<Person> iteratorFrom(long id) {
+        return collection.tailSet(probe(id), true).iterator();
+    }
+
+    /**
+     * Сплитератор красно-черного дерева делится по поддеревьям, то есть примерно пополам.
+     */
+    @Override
+    public Spliterator<Person> spliterator() {
+        return collection.spliterator();
+    }
+
+    @Override
+    public TreeSet<Person> snapshot() {
+        // Копия упорядоченного множества строится за линейное время
+        return new TreeSet<>(collection);
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return false;
+    }
+
+    @Override
+    public String getTypeName() {
+        return collection.getClass().getName();
+    }
+
+    /**
+     * Элемент-образец для поиска по ID в {@link TreeSet}: сравнение Person использует только ID.
+     */
+    static Person probe(long id) {
+        Person probe = new Person();
+        if (id > 0) {
+            probe.setId(id);
+        }
+        return probe;
+    }
+}
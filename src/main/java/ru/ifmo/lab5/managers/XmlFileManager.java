@@ -2,31 +2,58 @@ package ru.ifmo.lab5.managers;
 
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.MarshalException;
 import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.UnmarshalException;
 import jakarta.xml.bind.Unmarshaller;
-import jakarta.xml.bind.annotation.*;
 import ru.ifmo.lab5.model.*;
+import ru.ifmo.lab5.util.AtomicFileWriter;
+import ru.ifmo.lab5.util.IndentingXmlStreamWriter;
+import ru.ifmo.lab5.util.SortedListView;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.TreeSet;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * Управляет загрузкой и сохранением коллекции в XML файл.
+ * {@link JAXBContext} создается один раз на процесс, а маршаллеры и анмаршаллеры
+ * переиспользуются через пулы, так как сами по себе они не потокобезопасны.
  */
-public class XmlFileManager {
+public class XmlFileManager implements FileManager {
 
-    private final String filePath;
+    private static volatile JAXBContext context;
+    private static final Queue<Marshaller> marshallerPool = new ConcurrentLinkedQueue<>();
+    private static final Queue<Unmarshaller> unmarshallerPool = new ConcurrentLinkedQueue<>();
 
-    @XmlRootElement(name = "persons")
-    @XmlAccessorType(XmlAccessType.FIELD)
-    private static class PersonWrapper {
-        @XmlElement(name = "person")
-        private TreeSet<Person> persons = new TreeSet<>();
-        public PersonWrapper() {}
-        public PersonWrapper(TreeSet<Person> persons) { this.persons = persons; }
-        public TreeSet<Person> getPersons() { return persons; }
-    }
+    private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final byte[] PERSON_TAG = "<person".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROOT_END_TAG = "</persons>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNK_PREFIX = "<persons>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNK_SUFFIX = ROOT_END_TAG;
+
+    private final String filePath;
+    private boolean keepBackup = false;
 
     /**
      * Конструктор.
@@ -36,6 +63,52 @@ public class XmlFileManager {
         this.filePath = filePath.replace("\"", "");
     }
 
+    @Override
+    public void setKeepBackup(boolean keepBackup) {
+        this.keepBackup = keepBackup;
+    }
+
+    @Override
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Возвращает общий для процесса JAXB-контекст, создавая его при первом обращении.
+     * @return JAXB-контекст для классов модели.
+     * @throws JAXBException если контекст не удалось создать.
+     */
+    private static JAXBContext getContext() throws JAXBException {
+        JAXBContext result = context;
+        if (result == null) {
+            synchronized (XmlFileManager.class) {
+                result = context;
+                if (result == null) {
+                    result = JAXBContext.newInstance(Person.class, Coordinates.class, Location.class, Color.class, Country.class);
+                    context = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static Marshaller acquireMarshaller() throws JAXBException {
+        Marshaller marshaller = marshallerPool.poll();
+        return marshaller != null ? marshaller : getContext().createMarshaller();
+    }
+
+    private static Unmarshaller acquireUnmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = unmarshallerPool.poll();
+        return unmarshaller != null ? unmarshaller : getContext().createUnmarshaller();
+    }
+
     /**
      * Загружает коллекцию из XML файла.
      * Корректно обрабатывает пустой файл.
@@ -44,40 +117,420 @@ public class XmlFileManager {
      * @throws JAXBException если файл имеет неверный XML формат.
      * @throws SecurityException если нет прав на чтение файла.
      */
+    @Override
     public TreeSet<Person> load() throws IOException, JAXBException, SecurityException {
+        TreeSet<Person> persons = new TreeSet<>();
+        readPersons(persons::add, null);
+        return persons;
+    }
+
+    /**
+     * Потоково загружает коллекцию из XML файла прямо в менеджер коллекции.
+     * Элементы {@code <person>} читаются через StAX и десериализуются по одному,
+     * поэтому дерево всего документа в памяти не строится.
+     * Ожидается, что менеджер коллекции пуст.
+     * @param collectionManager Менеджер коллекции, в который добавляются элементы.
+     * @param progressListener Получает количество прочитанных элементов каждые {@value #PROGRESS_STEP} элементов
+     *                         и по окончании загрузки. Может быть null.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если файл имеет неверный XML формат.
+     * @throws SecurityException если нет прав на чтение файла.
+     */
+    @Override
+    public void load(CollectionManager collectionManager, LongConsumer progressListener) throws IOException, JAXBException, SecurityException {
+        readPersons(collectionManager::addLoaded, progressListener);
+    }
+
+    private void readPersons(Consumer<Person> sink, LongConsumer progressListener) throws IOException, JAXBException {
         File file = new File(filePath);
         if (!file.exists()) {
-            // Файла нет - возвращаем пустую коллекцию.
-            return new TreeSet<>();
+            // Файла нет - коллекция остается пустой.
+            return;
         }
 
         if (file.length() == 0) {
             // Файл существует, но он пустой. Это тоже норм ситуация.
-            return new TreeSet<>();
+            return;
         }
 
         try (InputStreamReader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
-            JAXBContext context = JAXBContext.newInstance(PersonWrapper.class, Person.class, Coordinates.class, Location.class, Color.class, Country.class);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            PersonWrapper wrapper = (PersonWrapper) unmarshaller.unmarshal(reader);
-            return (wrapper != null && wrapper.getPersons() != null) ? wrapper.getPersons() : new TreeSet<>();
+            parsePersons(reader, sink, progressListener);
+        }
+    }
+
+    /**
+     * Разбирает документ с корнем {@code <persons>} и передает элементы {@code <person>} по одному.
+     * @param reader Источник XML.
+     * @param sink Получатель элементов.
+     * @param progressListener Получатель прогресса или null.
+     * @return Количество прочитанных элементов.
+     */
+    private static long parsePersons(Reader reader, Consumer<Person> sink, LongConsumer progressListener) throws JAXBException {
+        Unmarshaller unmarshaller = acquireUnmarshaller();
+        XMLStreamReader xmlReader = null;
+        try {
+            xmlReader = xmlInputFactory.createXMLStreamReader(reader);
+            long count = 0;
+            boolean rootSeen = false;
+            while (xmlReader.hasNext()) {
+                if (!xmlReader.isStartElement()) {
+                    xmlReader.next();
+                    continue;
+                }
+                if (!rootSeen) {
+                    if (!"persons".equals(xmlReader.getLocalName())) {
+                        throw new UnmarshalException("Неожиданный корневой элемент: " + xmlReader.getLocalName());
+                    }
+                    rootSeen = true;
+                    xmlReader.next();
+                } else if ("person".equals(xmlReader.getLocalName())) {
+                    // unmarshal оставляет ридер на событии, следующем за </person>
+                    sink.accept(unmarshaller.unmarshal(xmlReader, Person.class).getValue());
+                    count++;
+                    if (progressListener != null && count % PROGRESS_STEP == 0) {
+                        progressListener.accept(count);
+                    }
+                } else {
+                    xmlReader.next();
+                }
+            }
+            if (progressListener != null) {
+                progressListener.accept(count);
+            }
+            return count;
+        } catch (XMLStreamException e) {
+            throw new UnmarshalException(e);
+        } finally {
+            if (xmlReader != null) {
+                try {
+                    xmlReader.close();
+                } catch (XMLStreamException ignored) {
+                    // Источник закрывает вызывающий код
+                }
+            }
+            unmarshallerPool.offer(unmarshaller);
+        }
+    }
+
+    /**
+     * Загружает коллекцию из XML файла в несколько потоков.
+     * Файл делится на части по границам элементов {@code <person>}, каждая часть разбирается
+     * отдельной задачей в {@link ForkJoinPool#commonPool()}, а результаты объединяются в порядке файла.
+     * Если файл уже упорядочен по ID (как его пишет {@link #save}), коллекция строится за линейное время.
+     * Деление рассчитано на файлы, записанные этим приложением: в них нет комментариев и CDATA,
+     * внутри которых мог бы встретиться текст {@code <person}. Если файл разделить не удалось,
+     * используется обычная потоковая загрузка.
+     * @param collectionManager Менеджер коллекции, содержимое которого заменяется загруженным.
+     * @param progressListener Получает количество прочитанных элементов по мере готовности частей. Может быть null.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если файл имеет неверный XML формат.
+     * @throws SecurityException если нет прав на чтение файла.
+     */
+    public void loadParallel(CollectionManager collectionManager, LongConsumer progressListener) throws IOException, JAXBException, SecurityException {
+        loadParallel(collectionManager, progressListener, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Загружает коллекцию из XML файла в несколько потоков указанного пула, см. {@link #loadParallel(CollectionManager, LongConsumer)}.
+     * @param collectionManager Менеджер коллекции, содержимое которого заменяется загруженным.
+     * @param progressListener Получает количество прочитанных элементов по мере готовности частей. Может быть null.
+     * @param pool Пул, в котором разбираются части файла.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если файл имеет неверный XML формат.
+     * @throws SecurityException если нет прав на чтение файла.
+     */
+    public void loadParallel(CollectionManager collectionManager, LongConsumer progressListener, ForkJoinPool pool) throws IOException, JAXBException, SecurityException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return;
+        }
+
+        List<Callable<List<Person>>> tasks = new ArrayList<>();
+        AtomicLong loaded = new AtomicLong();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = findChunkBoundaries(channel, pool.getParallelism() * 4);
+            if (boundaries == null) {
+                load(collectionManager, progressListener);
+                return;
+            }
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                long start = boundaries[i];
+                long end = boundaries[i + 1];
+                tasks.add(() -> {
+                    List<Person> persons = new ArrayList<>();
+                    try (FileChannel chunkChannel = FileChannel.open(path, StandardOpenOption.READ);
+                         Reader reader = new InputStreamReader(new SequenceInputStream(Collections.enumeration(List.of(
+                                 new ByteArrayInputStream(CHUNK_PREFIX),
+                                 new BufferedInputStream(new RegionInputStream(chunkChannel, start, end), SCAN_BUFFER_SIZE),
+                                 new ByteArrayInputStream(CHUNK_SUFFIX)))), StandardCharsets.UTF_8)) {
+                        parsePersons(reader, persons::add, null);
+                    }
+                    if (progressListener != null) {
+                        // Под блокировкой, чтобы значения приходили слушателю по возрастанию
+                        synchronized (loaded) {
+                            progressListener.accept(loaded.addAndGet(persons.size()));
+                        }
+                    }
+                    return persons;
+                });
+            }
+        }
+
+        List<List<Person>> chunks = new ArrayList<>(tasks.size());
+        for (Future<List<Person>> future : pool.invokeAll(tasks)) {
+            try {
+                chunks.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Загрузка коллекции прервана.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof JAXBException) throw (JAXBException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IOException(cause);
+            }
+        }
+        mergeChunks(chunks, collectionManager);
+    }
+
+    /**
+     * Объединяет части в порядке файла. ID максимального элемента считается по ходу объединения.
+     * Если все ID строго возрастают, {@link TreeSet} строится из отсортированного списка за линейное время,
+     * иначе элементы добавляются по одному, как при последовательной загрузке (первый дубликат ID побеждает).
+     */
+    private static void mergeChunks(List<List<Person>> chunks, CollectionManager collectionManager) {
+        int total = 0;
+        boolean sorted = true;
+        long previousId = Long.MIN_VALUE;
+        long maxId = 0;
+        for (List<Person> chunk : chunks) {
+            total += chunk.size();
+            for (Person person : chunk) {
+                long id = person.getId();
+                if (id <= previousId) {
+                    sorted = false;
+                }
+                previousId = id;
+                maxId = Math.max(maxId, id);
+            }
+        }
+
+        List<Person> all = new ArrayList<>(total);
+        chunks.forEach(all::addAll);
+        TreeSet<Person> collection = new TreeSet<>();
+        if (sorted) {
+            collection.addAll(new SortedListView<>(all));
+        } else {
+            collection.addAll(all);
+        }
+        collectionManager.setCollection(collection, maxId);
+    }
+
+    /**
+     * Находит смещения, по которым файл делится на части: начало каждой части - открывающий тег {@code <person>},
+     * последнее смещение - начало закрывающего тега {@code </persons>}.
+     * @return Отсортированные смещения или null, если в файле нет элементов или корневой элемент не найден.
+     */
+    private static long[] findChunkBoundaries(FileChannel channel, int chunkCount) throws IOException {
+        long end = findRootEnd(channel);
+        if (end < 0) {
+            return null;
+        }
+        long first = findPersonStart(channel, 0, end);
+        if (first < 0) {
+            return null;
+        }
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(first);
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (end - first) / chunkCount);
+        for (long target = first + chunkSize; target < end; target += chunkSize) {
+            long boundary = findPersonStart(channel, Math.max(target, boundaries.get(boundaries.size() - 1) + 1), end);
+            if (boundary < 0) {
+                break;
+            }
+            boundaries.add(boundary);
+        }
+        boundaries.add(end);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Ищет открывающий тег {@code <person} (но не {@code <persons}) в диапазоне [from, end).
+     * @return Смещение тега или -1.
+     */
+    private static long findPersonStart(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long position = from;
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= PERSON_TAG.length) {
+                return -1;
+            }
+            for (int i = 0; i + PERSON_TAG.length < read; i++) {
+                if (matchesAt(bytes, i, PERSON_TAG) && isTagNameEnd(bytes[i + PERSON_TAG.length])) {
+                    long found = position + i;
+                    return found < end ? found : -1;
+                }
+            }
+            // Перекрытие, чтобы не пропустить тег на стыке двух чтений
+            position += read - PERSON_TAG.length;
+        }
+        return -1;
+    }
+
+    /**
+     * Ищет последний закрывающий тег {@code </persons>} в конце файла.
+     * @return Смещение тега или -1.
+     */
+    private static long findRootEnd(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int length = (int) Math.min(size, SCAN_BUFFER_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, size - length + buffer.position()) < 0) {
+                return -1;
+            }
         }
+        byte[] bytes = buffer.array();
+        for (int i = length - ROOT_END_TAG.length; i >= 0; i--) {
+            if (matchesAt(bytes, i, ROOT_END_TAG)) {
+                return size - length + i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesAt(byte[] bytes, int offset, byte[] pattern) {
+        for (int j = 0; j < pattern.length; j++) {
+            if (bytes[offset + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTagNameEnd(byte b) {
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * Поток байт из диапазона файла. Читает позиционно, поэтому не зависит от позиции канала.
+     */
+    private static final class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RegionInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Сохраняет коллекцию в XML файл без форматирования.
+     * @param collection Коллекция для сохранения.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если произошла ошибка при преобразовании в XML.
+     * @throws SecurityException если нет прав на запись в файл.
+     */
+    @Override
+    public void save(Collection<Person> collection) throws IOException, JAXBException, SecurityException {
+        save(collection, false);
     }
 
     /**
      * Сохраняет коллекцию в XML файл.
+     * Корневой элемент записывается вручную через {@link XMLStreamWriter}, а элементы
+     * сериализуются по одному как JAXB-фрагменты, поэтому дополнительная память не зависит от размера коллекции.
+     * Запись атомарна, см. {@link AtomicFileWriter}.
      * @param collection Коллекция для сохранения.
+     * @param indent Добавлять ли переводы строк и отступы.
      * @throws IOException если произошла ошибка ввода-вывода.
      * @throws JAXBException если произошла ошибка при преобразовании в XML.
      * @throws SecurityException если нет прав на запись в файл.
      */
-    public void save(TreeSet<Person> collection) throws IOException, JAXBException, SecurityException {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath), StandardCharsets.UTF_8))) {
-            JAXBContext context = JAXBContext.newInstance(PersonWrapper.class, Person.class, Coordinates.class, Location.class, Color.class, Country.class);
-            Marshaller marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            PersonWrapper wrapper = new PersonWrapper(collection);
-            marshaller.marshal(wrapper, writer);
+    @Override
+    public void save(Collection<Person> collection, boolean indent) throws IOException, JAXBException, SecurityException {
+        save(collection, indent, null);
+    }
+
+    /**
+     * Сохраняет коллекцию в XML файл, сообщая о каждом записанном элементе.
+     * @param collection Коллекция для сохранения.
+     * @param indent Добавлять ли переводы строк и отступы.
+     * @param progressListener Получает количество записанных элементов. Может быть null.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws JAXBException если произошла ошибка при преобразовании в XML.
+     * @throws SecurityException если нет прав на запись в файл.
+     */
+    @Override
+    public void save(Collection<Person> collection, boolean indent, LongConsumer progressListener)
+            throws IOException, JAXBException, SecurityException {
+        AtomicFileWriter.<JAXBException>write(Paths.get(filePath), keepBackup,
+                channel -> writeXml(collection, indent, progressListener, channel));
+    }
+
+    private void writeXml(Collection<Person> collection, boolean indent, LongConsumer progressListener,
+                          FileChannel channel) throws IOException, JAXBException {
+        // Поток не закрывается: канал еще нужен для force(), его закроет вызывающий код
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+        Marshaller marshaller = acquireMarshaller();
+        XMLStreamWriter xmlWriter = null;
+        try {
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            xmlWriter = xmlOutputFactory.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+            if (indent) {
+                xmlWriter = new IndentingXmlStreamWriter(xmlWriter);
+            }
+            xmlWriter.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            xmlWriter.writeStartElement("persons");
+            long written = 0;
+            for (Person person : collection) {
+                // JAXB читает поля напрямую, поэтому ленивые элементы сначала декодируются
+                marshaller.marshal(MappedPerson.unwrap(person), xmlWriter);
+                if (progressListener != null) {
+                    progressListener.accept(++written);
+                }
+            }
+            xmlWriter.writeEndElement();
+            xmlWriter.writeEndDocument();
+            xmlWriter.flush();
+            out.flush();
+        } catch (XMLStreamException e) {
+            throw new MarshalException(e);
+        } finally {
+            if (xmlWriter != null) {
+                try {
+                    xmlWriter.close();
+                } catch (XMLStreamException ignored) {
+                    // Канал закрывается в AtomicFileWriter
+                }
+            }
+            marshallerPool.offer(marshaller);
         }
     }
-}
\ No newline at end of file
+}
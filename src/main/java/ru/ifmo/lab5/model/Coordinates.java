@@ -87,9 +87,18 @@ public class Coordinates {
      */
     @Override
     public String toString() {
-        return "Coordinates{" +
-                "x=" + x +
-                ", y=" + y +
-                '}';
+        return appendTo(new StringBuilder(48)).toString();
+    }
+
+    /**
+     * Дописывает строковое представление координат в буфер.
+     * @param sb Буфер для записи.
+     * @return Тот же буфер.
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append("Coordinates{x=");
+        // Распакованное значение дописывается без промежуточной строки
+        if (x != null) sb.append(x.doubleValue()); else sb.append("null");
+        return sb.append(", y=").append(y).append('}');
     }
 }
\ No newline at end of file
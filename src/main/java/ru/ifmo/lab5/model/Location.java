@@ -64,11 +64,20 @@ public class Location {
 
     @Override
     public String toString() {
-        return "Location{" +
-                "x=" + x +
-                ", y=" + y +
-                ", z=" + z +
-                ", name='" + (name == null ? "N/A" : name) + '\'' +
-                '}';
+        return appendTo(new StringBuilder(64)).toString();
+    }
+
+    /**
+     * Дописывает строковое представление местоположения в буфер.
+     * @param sb Буфер для записи.
+     * @return Тот же буфер.
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append("Location{x=");
+        // Распакованные значения дописываются без промежуточных строк
+        if (x != null) sb.append(x.floatValue()); else sb.append("null");
+        sb.append(", y=").append(y).append(", z=");
+        if (z != null) sb.append(z.doubleValue()); else sb.append("null");
+        return sb.append(", name='").append(name == null ? "N/A" : name).append("'}");
     }
 }
\ No newline at end of file
@@ -18,6 +18,8 @@ import java.util.Objects;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Person implements Comparable<Person> {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+
     @XmlElement
     private long id; //Значение поля должно быть больше 0, Значение этого поля должно быть уникальным, Значение этого поля должно генерироваться автоматически
 
@@ -179,7 +181,7 @@ public class Person implements Comparable<Person> {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Person)) return false;
         Person person = (Person) o;
         return id == person.id; // Уникальность по ID
     }
@@ -191,18 +193,40 @@ public class Person implements Comparable<Person> {
 
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
-
-        return "Person {" +
-                "\n  id=" + id +
-                ",\n  name='" + name + '\'' +
-                ",\n  coordinates=" + coordinates +
-                ",\n  creationDate=" + (creationDate != null ? creationDate.format(formatter) : "N/A") +
-                ",\n  height=" + height +
-                ",\n  eyeColor=" + (eyeColor == null ? "N/A" : eyeColor.getRussianName()) +
-                ",\n  hairColor=" + (hairColor == null ? "N/A" : hairColor.getRussianName()) +
-                ",\n  nationality=" + (nationality == null ? "N/A" : nationality.getRussianName()) +
-                ",\n  location=" + (location != null ? location.toString() : "N/A") +
-                "\n}";
+        return appendTo(new StringBuilder(384)).toString();
+    }
+
+    /**
+     * Дописывает строковое представление объекта в буфер без создания промежуточных строк.
+     * Результат совпадает с {@link #toString()}, которое реализовано через этот метод.
+     * @param sb Буфер для записи.
+     * @return Тот же буфер.
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append("Person {\n  id=").append(id)
+                .append(",\n  name='").append(name).append('\'')
+                .append(",\n  coordinates=");
+        if (coordinates != null) {
+            coordinates.appendTo(sb);
+        } else {
+            sb.append("null");
+        }
+        sb.append(",\n  creationDate=");
+        if (creationDate != null) {
+            DATE_FORMATTER.formatTo(creationDate, sb);
+        } else {
+            sb.append("N/A");
+        }
+        sb.append(",\n  height=").append(height)
+                .append(",\n  eyeColor=").append(eyeColor == null ? "N/A" : eyeColor.getRussianName())
+                .append(",\n  hairColor=").append(hairColor == null ? "N/A" : hairColor.getRussianName())
+                .append(",\n  nationality=").append(nationality == null ? "N/A" : nationality.getRussianName())
+                .append(",\n  location=");
+        if (location != null) {
+            location.appendTo(sb);
+        } else {
+            sb.append("N/A");
+        }
+        return sb.append("\n}");
     }
 }
\ No newline at end of file
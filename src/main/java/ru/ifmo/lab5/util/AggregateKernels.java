@@ -0,0 +1,240 @@
+package ru.ifmo.lab5.util;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BinaryOperator;
+
+/**
+ * Агрегаты над массивами примитивов: сумма, минимум, максимум и гистограмма.
+ * Каждое ядро - простой цикл по массиву без упаковки и без обращений к объектам, поэтому JIT
+ * разворачивает его и, где это допускают правила вычислений, векторизует (целочисленные сумма, минимум и максимум).
+ * Сумма double векторизуется JIT только с изменением порядка сложения, поэтому считается в четыре
+ * независимых накопителя: так процессор выполняет сложения параллельно, а результат воспроизводим.
+ * <p>
+ * Массивы длиннее {@value #PARALLEL_THRESHOLD} элементов делятся пополам, пока части не станут не длиннее порога,
+ * и частичные результаты объединяются. Если передан пул, части считаются в нем параллельно, иначе - по очереди
+ * в вызывающем потоке. Деление от пула не зависит, поэтому результат (включая округление суммы double)
+ * одинаков при любом параллелизме.
+ */
+public final class AggregateKernels {
+    /**
+     * Длина массива, начиная с которой вычисление делится между потоками.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private AggregateKernels() {}
+
+    /**
+     * Точная сумма: старшие и младшие 32 бита значений складываются отдельно и не переполняются
+     * при любой длине массива.
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Значения.
+     * @return Сумма.
+     */
+    public static BigInteger sum(ForkJoinPool pool, long[] values) {
+        long[] parts = reduce(pool, values.length, (from, to) -> {
+            long high = 0;
+            long low = 0;
+            for (int i = from; i < to; i++) {
+                long value = values[i];
+                high += value >> 32;
+                low += value & 0xFFFFFFFFL;
+            }
+            return new long[] {high, low};
+        }, (left, right) -> new long[] {left[0] + right[0], left[1] + right[1]});
+        return BigInteger.valueOf(parts[0]).shiftLeft(32).add(BigInteger.valueOf(parts[1]));
+    }
+
+    /**
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Значения.
+     * @return Сумма.
+     */
+    public static double sum(ForkJoinPool pool, double[] values) {
+        return reduce(pool, values.length, (from, to) -> {
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            int i = from;
+            for (; i + 3 < to; i += 4) {
+                s0 += values[i];
+                s1 += values[i + 1];
+                s2 += values[i + 2];
+                s3 += values[i + 3];
+            }
+            for (; i < to; i++) {
+                s0 += values[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }, Double::sum);
+    }
+
+    /**
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Непустой массив значений.
+     * @return Минимальное значение.
+     */
+    public static long min(ForkJoinPool pool, long[] values) {
+        return reduce(pool, values.length, (from, to) -> {
+            long min = Long.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, values[i]);
+            }
+            return min;
+        }, Math::min);
+    }
+
+    /**
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Непустой массив значений.
+     * @return Максимальное значение.
+     */
+    public static long max(ForkJoinPool pool, long[] values) {
+        return reduce(pool, values.length, (from, to) -> {
+            long max = Long.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, values[i]);
+            }
+            return max;
+        }, Math::max);
+    }
+
+    /**
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Непустой массив значений.
+     * @return Минимальное значение.
+     */
+    public static double min(ForkJoinPool pool, double[] values) {
+        return reduce(pool, values.length, (from, to) -> {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, values[i]);
+            }
+            return min;
+        }, Math::min);
+    }
+
+    /**
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Непустой массив значений.
+     * @return Максимальное значение.
+     */
+    public static double max(ForkJoinPool pool, double[] values) {
+        return reduce(pool, values.length, (from, to) -> {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, values[i]);
+            }
+            return max;
+        }, Math::max);
+    }
+
+    /**
+     * Считает, сколько значений попадает в каждый из равных интервалов от min до max включительно.
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Значения из отрезка [min, max].
+     * @param min Начало первого интервала.
+     * @param max Конец последнего интервала.
+     * @param buckets Количество интервалов.
+     * @return Количество значений в каждом интервале.
+     */
+    public static long[] histogram(ForkJoinPool pool, long[] values, long min, long max, int buckets) {
+        // Масштаб считается в double: разность max - min + 1 может не поместиться в long.
+        // Умножение на масштаб вместо деления на ширину интервала заметно дешевле в цикле
+        double scale = buckets / ((double) max - min + 1);
+        return reduce(pool, values.length, (from, to) -> {
+            long[] counts = new long[buckets];
+            for (int i = from; i < to; i++) {
+                counts[Math.min((int) ((values[i] - (double) min) * scale), buckets - 1)]++;
+            }
+            return counts;
+        }, AggregateKernels::add);
+    }
+
+    /**
+     * Считает, сколько значений попадает в каждый из равных интервалов от min до max включительно.
+     * @param pool Пул для параллельного вычисления или null.
+     * @param values Значения из отрезка [min, max].
+     * @param min Начало первого интервала.
+     * @param max Конец последнего интервала.
+     * @param buckets Количество интервалов.
+     * @return Количество значений в каждом интервале.
+     */
+    public static long[] histogram(ForkJoinPool pool, double[] values, double min, double max, int buckets) {
+        double scale = max > min ? buckets / (max - min) : 0;
+        return reduce(pool, values.length, (from, to) -> {
+            long[] counts = new long[buckets];
+            for (int i = from; i < to; i++) {
+                counts[Math.min((int) ((values[i] - min) * scale), buckets - 1)]++;
+            }
+            return counts;
+        }, AggregateKernels::add);
+    }
+
+    private static long[] add(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    /**
+     * Вычисление над диапазоном массива [from, to).
+     */
+    @FunctionalInterface
+    private interface RangeKernel<R> {
+        R apply(int from, int to);
+    }
+
+    private static <R> R reduce(ForkJoinPool pool, int length, RangeKernel<R> kernel, BinaryOperator<R> combine) {
+        if (pool != null && length > PARALLEL_THRESHOLD) {
+            try {
+                return pool.invoke(new RangeTask<>(0, length, kernel, combine, true));
+            } catch (RejectedExecutionException e) {
+                // Пул завершен сменой параллелизма - считаем в текущем потоке
+            }
+        }
+        return new RangeTask<>(0, length, kernel, combine, false).compute();
+    }
+
+    /**
+     * Делит диапазон пополам, пока части не станут не длиннее {@link #PARALLEL_THRESHOLD}.
+     * Без флага parallel обе половины считаются в текущем потоке в том же порядке объединения.
+     */
+    private static final class RangeTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final RangeKernel<R> kernel;
+        private final BinaryOperator<R> combine;
+        private final boolean parallel;
+
+        RangeTask(int from, int to, RangeKernel<R> kernel, BinaryOperator<R> combine, boolean parallel) {
+            this.from = from;
+            this.to = to;
+            this.kernel = kernel;
+            this.combine = combine;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return kernel.apply(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask<R> left = new RangeTask<>(from, middle, kernel, combine, parallel);
+            RangeTask<R> right = new RangeTask<>(middle, to, kernel, combine, parallel);
+            if (!parallel) {
+                return combine.apply(left.compute(), right.compute());
+            }
+            left.fork();
+            R rightResult = right.compute();
+            return combine.apply(left.join(), rightResult);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ifmo.lab5.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+/**
+ * Атомарная запись файла: данные пишутся во временный файл рядом с целевым,
+ * сбрасываются на диск и переименовываются поверх целевого файла.
+ * Сбой посреди записи не портит существующий файл.
+ * Если целевой файл - символическая ссылка, заменяется файл, на который она указывает, а сама ссылка остается.
+ * Права доступа существующего файла переносятся на новую версию (на файловых системах с правами POSIX);
+ * новый файл создается с правами временного файла - только для владельца.
+ */
+public final class AtomicFileWriter {
+
+    /**
+     * Действие, записывающее содержимое файла в канал.
+     */
+    @FunctionalInterface
+    public interface ContentWriter<E extends Exception> {
+        /**
+         * Записывает содержимое. Канал закрывать не нужно.
+         * @param channel Канал временного файла.
+         * @throws IOException если произошла ошибка ввода-вывода.
+         * @throws E ошибка сериализации данных.
+         */
+        void write(FileChannel channel) throws IOException, E;
+    }
+
+    private AtomicFileWriter() {}
+
+    /**
+     * Атомарно заменяет содержимое файла.
+     * @param target Целевой файл.
+     * @param keepBackup Сохранять ли предыдущую версию как {@code <файл>.bak}.
+     * @param writer Действие, записывающее новое содержимое.
+     * @throws IOException если произошла ошибка ввода-вывода.
+     * @throws E если writer завершился ошибкой сериализации.
+     */
+    public static <E extends Exception> void write(Path target, boolean keepBackup, ContentWriter<E> writer) throws IOException, E {
+        target = Files.exists(target) ? target.toRealPath() : target.toAbsolutePath();
+        Path directory = target.getParent();
+        Path tempFile = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            copyPermissions(target, tempFile);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write(channel);
+                channel.force(true);
+            }
+            if (keepBackup && Files.exists(target)) {
+                createBackup(target);
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+            syncDirectory(directory);
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Переносит права POSIX существующего целевого файла на временный: createTempFile создает файл
+     * с правами 0600, и без этого после переименования файл потерял бы доступ для группы и остальных.
+     */
+    private static void copyPermissions(Path target, Path tempFile) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(target);
+            Files.setPosixFilePermissions(tempFile, permissions);
+        } catch (UnsupportedOperationException e) {
+            // Файловая система без прав POSIX - переносить нечего
+        }
+    }
+
+    /**
+     * Сохраняет текущую версию файла как {@code .bak}, не трогая сам файл.
+     * Используется жесткая ссылка, а если ФС ее не поддерживает - копирование.
+     */
+    private static void createBackup(Path target) throws IOException {
+        Path backup = target.resolveSibling(target.getFileName() + ".bak");
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск запись каталога, чтобы переименование пережило сбой питания.
+     * Не на всех платформах каталог можно открыть как канал, поэтому ошибка здесь не критична.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // Файл уже на месте, синхронизация каталога - лишь дополнительная гарантия
+        }
+    }
+}
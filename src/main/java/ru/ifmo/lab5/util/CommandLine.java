@@ -0,0 +1,93 @@
+package ru.ifmo.lab5.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Строка команды, разделенная на имя команды и аргументы.
+ * Разбор выполняется одним проходом по символам, без регулярных выражений: имя - все символы
+ * до первого пробельного, аргументы - остаток строки после следующих за именем пробельных символов.
+ * Пробельными считаются те же символы, что и {@code \s} в регулярных выражениях.
+ * Используется и консолью, и {@link ru.ifmo.lab5.managers.ScriptRunner}, поэтому строки разбираются одинаково.
+ */
+public final class CommandLine {
+    private final String name;
+    private final String arguments;
+
+    private CommandLine(String name, String arguments) {
+        this.name = name;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Разбирает строку команды.
+     * @param line Строка, обычно уже без пробелов по краям.
+     * @return Разобранная команда или null, если в строке нет ничего, кроме пробельных символов.
+     */
+    public static CommandLine parse(String line) {
+        int length = line.length();
+        int start = 0;
+        while (start < length && isSpace(line.charAt(start))) {
+            start++;
+        }
+        if (start == length) {
+            return null;
+        }
+        int end = start;
+        while (end < length && !isSpace(line.charAt(end))) {
+            end++;
+        }
+        int argumentsStart = end;
+        while (argumentsStart < length && isSpace(line.charAt(argumentsStart))) {
+            argumentsStart++;
+        }
+        String arguments = argumentsStart < length ? line.substring(argumentsStart) : null;
+        return new CommandLine(line.substring(start, end).toLowerCase(Locale.ROOT), arguments);
+    }
+
+    /**
+     * Делит аргументы команды на слова по пробельным символам, так же, как {@link #parse} отделяет имя.
+     * @param arguments Аргументы команды или null.
+     * @return Слова аргументов; пустой массив, если аргументов нет.
+     */
+    public static String[] tokenize(String arguments) {
+        if (arguments == null) {
+            return new String[0];
+        }
+        List<String> tokens = new ArrayList<>();
+        int length = arguments.length();
+        int position = 0;
+        while (position < length) {
+            while (position < length && isSpace(arguments.charAt(position))) {
+                position++;
+            }
+            int start = position;
+            while (position < length && !isSpace(arguments.charAt(position))) {
+                position++;
+            }
+            if (position > start) {
+                tokens.add(arguments.substring(start, position));
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * @return Имя команды в нижнем регистре.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Аргументы команды или null, если их нет.
+     */
+    public String getArguments() {
+        return arguments;
+    }
+}
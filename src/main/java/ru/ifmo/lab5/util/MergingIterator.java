@@ -0,0 +1,64 @@
+package ru.ifmo.lab5.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Итератор, сливающий несколько упорядоченных итераторов в один упорядоченный поток (k-путевое слияние).
+ * Каждый следующий элемент выбирается из кучи текущих голов за O(log k), копии источников не создаются.
+ * @param <E> Тип элементов, упорядоченных по естественному порядку.
+ */
+public final class MergingIterator<E extends Comparable<? super E>> implements Iterator<E> {
+    private final PriorityQueue<Head<E>> heads;
+
+    /**
+     * @param sources Итераторы, каждый из которых возвращает элементы по возрастанию.
+     */
+    public MergingIterator(Collection<? extends Iterator<? extends E>> sources) {
+        heads = new PriorityQueue<>(Math.max(1, sources.size()));
+        for (Iterator<? extends E> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public E next() {
+        Head<E> head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        E current = head.element;
+        if (head.source.hasNext()) {
+            head.element = head.source.next();
+            heads.add(head);
+        }
+        return current;
+    }
+
+    /**
+     * Текущий элемент одного из источников.
+     */
+    private static final class Head<E extends Comparable<? super E>> implements Comparable<Head<E>> {
+        private E element;
+        private final Iterator<? extends E> source;
+
+        Head(E element, Iterator<? extends E> source) {
+            this.element = element;
+            this.source = source;
+        }
+
+        @Override
+        public int compareTo(Head<E> other) {
+            return element.compareTo(other.element);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ru.ifmo.lab5.util;
+
+import ru.ifmo.lab5.model.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Компактное двоичное представление объекта {@link Person}.
+ * Числа пишутся фиксированной ширины, перечисления - порядковым номером (-1 для null),
+ * строки - длиной и байтами UTF-8 (-1 для null).
+ */
+public final class PersonCodec {
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private PersonCodec() {}
+
+    /**
+     * Записывает объект Person.
+     * @param out Поток для записи.
+     * @param person Объект для записи.
+     * @throws IOException если произошла ошибка записи.
+     */
+    public static void write(DataOutput out, Person person) throws IOException {
+        out.writeLong(person.getId());
+        writeString(out, person.getName());
+
+        Coordinates coordinates = person.getCoordinates();
+        out.writeBoolean(coordinates != null);
+        if (coordinates != null) {
+            out.writeDouble(coordinates.getX());
+            out.writeFloat(coordinates.getY());
+        }
+
+        LocalDateTime creationDate = person.getCreationDate();
+        out.writeBoolean(creationDate != null);
+        if (creationDate != null) {
+            out.writeLong(creationDate.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(creationDate.getNano());
+        }
+
+        out.writeLong(person.getHeight());
+        out.writeByte(ordinal(person.getEyeColor()));
+        out.writeByte(ordinal(person.getHairColor()));
+        out.writeByte(ordinal(person.getNationality()));
+
+        Location location = person.getLocation();
+        out.writeBoolean(location != null);
+        if (location != null) {
+            out.writeFloat(location.getX());
+            out.writeDouble(location.getY());
+            out.writeDouble(location.getZ());
+            writeString(out, location.getName());
+        }
+    }
+
+    /**
+     * Читает объект Person, записанный методом {@link #write}.
+     * @param in Поток для чтения.
+     * @return Прочитанный объект.
+     * @throws IOException если произошла ошибка чтения или данные некорректны.
+     */
+    public static Person read(DataInput in) throws IOException {
+        try {
+            Person person = new Person();
+            person.setId(in.readLong());
+            person.setName(readString(in));
+            if (in.readBoolean()) {
+                double x = in.readDouble();
+                person.setCoordinates(new Coordinates(x, in.readFloat()));
+            }
+            if (in.readBoolean()) {
+                long epochSecond = in.readLong();
+                person.setCreationDate(LocalDateTime.ofEpochSecond(epochSecond, in.readInt(), ZoneOffset.UTC));
+            }
+            person.setHeight(in.readLong());
+            person.setEyeColor(color(in.readByte()));
+            person.setHairColor(color(in.readByte()));
+            person.setNationality(country(in.readByte()));
+            if (in.readBoolean()) {
+                float x = in.readFloat();
+                double y = in.readDouble();
+                double z = in.readDouble();
+                person.setLocation(new Location(x, y, z, readString(in)));
+            }
+            return person;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректные данные элемента: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Возвращает порядковый номер константы или -1 для null.
+     * @param value Константа перечисления.
+     * @return Порядковый номер.
+     */
+    public static int ordinal(Enum<?> value) {
+        return value == null ? -1 : value.ordinal();
+    }
+
+    /**
+     * Возвращает цвет по порядковому номеру.
+     * @param ordinal Порядковый номер или -1 для null.
+     * @return Цвет или null.
+     * @throws IllegalArgumentException если такого цвета нет (данные повреждены).
+     */
+    public static Color color(int ordinal) {
+        return constant(COLORS, ordinal, "цвета");
+    }
+
+    /**
+     * Возвращает страну по порядковому номеру.
+     * @param ordinal Порядковый номер или -1 для null.
+     * @return Страна или null.
+     * @throws IllegalArgumentException если такой страны нет (данные повреждены).
+     */
+    public static Country country(int ordinal) {
+        return constant(COUNTRIES, ordinal, "страны");
+    }
+
+    private static <E> E constant(E[] values, int ordinal, String kind) {
+        if (ordinal == -1) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Неизвестный порядковый номер " + kind + ": " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.ifmo.lab5.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Ленивый результат запроса к коллекции.
+ * Не копирует найденные элементы, а обходит данные коллекции в момент чтения, по возрастанию естественного порядка.
+ * Результат читается один раз: через {@link #forEach(Consumer)} или {@link #materialize()}.
+ * Обход выполняется под блокировкой чтения коллекции, поэтому действие может читать коллекцию через ее менеджер,
+ * но не изменять ее; для долгоживущего результата нужен {@link #materialize()}.
+ * @param <E> Тип элементов.
+ */
+public final class QueryResult<E extends Comparable<? super E>> {
+    private Consumer<Consumer<? super E>> traversal;
+
+    /**
+     * Приватный конструктор для создания экземпляра через статические методы.
+     * @param traversal Обход, передающий упорядоченные элементы результата указанному действию.
+     */
+    private QueryResult(Consumer<Consumer<? super E>> traversal) {
+        this.traversal = traversal;
+    }
+
+    /**
+     * Создает результат, элементы которого будут получены обходом в момент чтения.
+     * @param traversal Обход, передающий элементы по возрастанию указанному действию.
+     * @param <E> Тип элементов.
+     * @return Ленивый результат.
+     */
+    public static <E extends Comparable<? super E>> QueryResult<E> of(Consumer<Consumer<? super E>> traversal) {
+        return new QueryResult<>(traversal);
+    }
+
+    /**
+     * Создает пустой результат.
+     * @param <E> Тип элементов.
+     * @return Пустой результат.
+     */
+    public static <E extends Comparable<? super E>> QueryResult<E> empty() {
+        return new QueryResult<>(action -> { });
+    }
+
+    /**
+     * Передает элементы результата действию в порядке возрастания.
+     * @param action Действие для каждого элемента.
+     * @throws IllegalStateException если результат уже был прочитан.
+     */
+    public void forEach(Consumer<? super E> action) {
+        if (traversal == null) {
+            throw new IllegalStateException("Результат запроса уже прочитан.");
+        }
+        Consumer<Consumer<? super E>> current = traversal;
+        traversal = null;
+        current.accept(action);
+    }
+
+    /**
+     * Копирует результат в независимый от коллекции {@link TreeSet}.
+     * Элементы уже упорядочены, поэтому множество строится за линейное время.
+     * @return Снимок результата.
+     * @throws IllegalStateException если результат уже был прочитан.
+     */
+    public TreeSet<E> materialize() {
+        List<E> elements = new ArrayList<>();
+        forEach(elements::add);
+        TreeSet<E> snapshot = new TreeSet<>();
+        snapshot.addAll(new SortedListView<>(elements));
+        return snapshot;
+    }
+}
@@ -2,31 +2,49 @@ package ru.ifmo.lab5.util;
 
 import org.jline.reader.EndOfFileException;
 
-import java.util.Scanner;
+import java.util.List;
 
 /**
- * Реализация {@link InputProvider} для чтения из файла с помощью Scanner.
+ * Реализация {@link InputProvider} для чтения строк уже прочитанного скрипта.
+ * Строки команд и строки с вводом для команд (например, поля элемента для add) берутся
+ * из одного курсора: команда, запросившая ввод, забирает следующие строки скрипта.
  */
 public class ScriptInputProvider implements InputProvider {
-    private final Scanner scanner;
+    private final List<String> lines;
+    private int position;
 
     /**
      * Конструктор.
-     * @param scanner Сканер, связанный с файлом скрипта.
+     * @param lines Строки скрипта. Список не копируется и не должен изменяться во время выполнения.
      */
-    public ScriptInputProvider(Scanner scanner) {
-        this.scanner = scanner;
+    public ScriptInputProvider(List<String> lines) {
+        this.lines = lines;
     }
 
-    @Override
-    public String readLine(String prompt) {
-        if (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            // Эмулируем эхо-ввод для наглядности выполнения скрипта
-            System.out.println(line);
-            return line;
-        } else {
+    /**
+     * @return true, если в скрипте остались непрочитанные строки.
+     */
+    public boolean hasNextLine() {
+        return position < lines.size();
+    }
+
+    /**
+     * Пропускает следующую строку, не выводя ее, и возвращает ее номер.
+     * @return Номер строки (с нуля).
+     * @throws EndOfFileException если строки закончились.
+     */
+    public int nextLineIndex() {
+        if (position >= lines.size()) {
             throw new EndOfFileException();
         }
+        return position++;
+    }
+
+    @Override
+    public String readLine(String prompt) {
+        String line = lines.get(nextLineIndex());
+        // Эмулируем эхо-ввод для наглядности выполнения скрипта
+        System.out.println(line);
+        return line;
     }
-}
\ No newline at end of file
+}
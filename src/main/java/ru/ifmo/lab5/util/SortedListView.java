@@ -0,0 +1,131 @@
+package ru.ifmo.lab5.util;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Представление списка, уже упорядоченного по естественному порядку и без дубликатов, как {@link SortedSet}
+ * только для чтения.
+ * Нужно, чтобы {@link java.util.TreeSet#addAll} для пустого множества построил дерево за линейное время,
+ * а не добавлял элементы по одному. Упорядоченность списка не проверяется - это обязанность вызывающего кода.
+ * Поиск элемента и границ поддиапазонов выполняется двоичным поиском, поддиапазоны - представления
+ * {@link List#subList} исходного списка без копирования.
+ * @param <E> Тип элементов, сравнимых в естественном порядке.
+ */
+public final class SortedListView<E> extends AbstractSet<E> implements SortedSet<E> {
+    private final List<E> list;
+    /** Границы диапазона представления: нижняя включается, верхняя нет; null - без границы. */
+    private final E lowerBound;
+    private final E upperBound;
+
+    /**
+     * @param list Строго возрастающий список элементов с быстрым доступом по индексу.
+     */
+    public SortedListView(List<E> list) {
+        this(Collections.unmodifiableList(list), null, null);
+    }
+
+    private SortedListView(List<E> list, E lowerBound, E upperBound) {
+        this.list = list;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return list.iterator();
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        E element = (E) o;
+        int index = indexOf(element);
+        return index < list.size() && compare(list.get(index), element) == 0;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return null;
+    }
+
+    @Override
+    public E first() {
+        if (list.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return list.get(0);
+    }
+
+    @Override
+    public E last() {
+        if (list.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return list.get(list.size() - 1);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        checkInRange(fromElement);
+        checkInRange(toElement);
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement больше toElement");
+        }
+        return new SortedListView<>(list.subList(indexOf(fromElement), indexOf(toElement)), fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        checkInRange(toElement);
+        return new SortedListView<>(list.subList(0, indexOf(toElement)), lowerBound, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        checkInRange(fromElement);
+        return new SortedListView<>(list.subList(indexOf(fromElement), list.size()), fromElement, upperBound);
+    }
+
+    /**
+     * @return Индекс первого элемента, не меньшего указанного (size(), если таких нет).
+     */
+    private int indexOf(E element) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(list.get(middle), element) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Граница поддиапазона должна лежать в диапазоне представления, как требует контракт {@link SortedSet}.
+     */
+    private void checkInRange(E element) {
+        if (lowerBound != null && compare(element, lowerBound) < 0
+                || upperBound != null && compare(element, upperBound) > 0) {
+            throw new IllegalArgumentException("Элемент вне диапазона представления");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> int compare(E left, E right) {
+        return ((Comparable<? super E>) left).compareTo(right);
+    }
+}
@@ -0,0 +1,155 @@
+package ru.ifmo.lab5.managers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Coordinates;
+import ru.ifmo.lab5.model.Country;
+import ru.ifmo.lab5.model.Location;
+import ru.ifmo.lab5.model.Person;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFileManagerTest {
+    @TempDir
+    Path directory;
+
+    static TreeSet<Person> sampleCollection() {
+        TreeSet<Person> persons = new TreeSet<>();
+        Person full = new Person(1, "Иван Петров", new Coordinates(-123.456, 7.25f), 180,
+                Color.GREEN, Color.RED, Country.VATICAN, new Location(1.5f, -2.0, 3.0, "Санкт-Петербург"));
+        full.setCreationDate(LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_456_789));
+        persons.add(full);
+        Person nulls = new Person(7, "x", new Coordinates(0.0, 0f), 1, null, null, null,
+                new Location(0f, 0.0, 0.0, null));
+        nulls.setCreationDate(LocalDateTime.of(1970, 1, 1, 0, 0));
+        persons.add(nulls);
+        Person extreme = new Person(Long.MAX_VALUE, "日本語 😀", new Coordinates(-Double.MAX_VALUE, -Float.MAX_VALUE),
+                Long.MAX_VALUE, Color.BLUE, Color.BLUE, Country.INDIA, new Location(Float.MIN_VALUE, 1e300, -0.0, "日本語 😀"));
+        extreme.setCreationDate(LocalDateTime.of(2999, 12, 31, 12, 0, 0, 1));
+        persons.add(extreme);
+        return persons;
+    }
+
+    private BinaryFileManager saved(TreeSet<Person> persons) throws IOException {
+        BinaryFileManager fileManager = new BinaryFileManager(directory.resolve("collection.bin").toString());
+        fileManager.save(persons);
+        return fileManager;
+    }
+
+    @Test
+    void roundTripKeepsEveryField() throws IOException {
+        TreeSet<Person> persons = sampleCollection();
+        TreeSet<Person> loaded = saved(persons).load();
+        assertEquals(persons.toString(), loaded.toString());
+    }
+
+    @Test
+    void roundTripOfEmptyCollection() throws IOException {
+        assertTrue(saved(new TreeSet<>()).load().isEmpty());
+    }
+
+    @Test
+    void loadIntoManagerReportsProgressAndAdvancesNextId() throws IOException {
+        BinaryFileManager fileManager = saved(sampleCollection());
+        CollectionManager collectionManager = new CollectionManager();
+        List<Long> progress = new ArrayList<>();
+        fileManager.load(collectionManager, progress::add);
+        assertEquals(3, collectionManager.size());
+        assertEquals(List.of(3L), progress);
+        assertEquals(sampleCollection().toString(), collectionManager.snapshot().toString());
+    }
+
+    @Test
+    void missingFileLoadsAsEmpty() throws IOException {
+        assertTrue(new BinaryFileManager(directory.resolve("missing.bin").toString()).load().isEmpty());
+    }
+
+    @Test
+    void corruptedRecordFailsChecksum() throws IOException {
+        BinaryFileManager fileManager = saved(sampleCollection());
+        Path file = Path.of(fileManager.getFilePath());
+        // Портится младший байт роста последней записи
+        flipByte(file, lastRecordField(file, BinaryFileManager.OFFSET_HEIGHT + Long.BYTES - 1));
+
+        IOException error = assertThrows(IOException.class, fileManager::load);
+        assertTrue(error.getMessage().contains("Контрольная сумма"), error.getMessage());
+    }
+
+    /**
+     * Смещение поля последней записи: записи лежат перед столбцом ID (3 * 8 байт) и CRC32 (4 байта).
+     */
+    private static long lastRecordField(Path file, int fieldOffset) throws IOException {
+        return Files.size(file) - Integer.BYTES - 3L * Long.BYTES - BinaryFileManager.RECORD_SIZE + fieldOffset;
+    }
+
+    static void writeByte(Path file, long offset, int value) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(offset);
+            raf.write(value);
+        }
+    }
+
+    @Test
+    void unknownColorOrdinalIsReportedAsCorruptData() throws IOException {
+        BinaryFileManager fileManager = saved(sampleCollection());
+        Path file = Path.of(fileManager.getFilePath());
+        writeByte(file, lastRecordField(file, BinaryFileManager.OFFSET_HAIR_COLOR), 100);
+
+        IOException error = assertThrows(IOException.class, fileManager::load);
+        assertTrue(error.getMessage().contains("Некорректные данные элемента"), error.getMessage());
+    }
+
+    @Test
+    void unknownCountryOrdinalIsReportedAsCorruptData() throws IOException {
+        BinaryFileManager fileManager = saved(sampleCollection());
+        Path file = Path.of(fileManager.getFilePath());
+        writeByte(file, lastRecordField(file, BinaryFileManager.OFFSET_NATIONALITY), -2);
+
+        IOException error = assertThrows(IOException.class, fileManager::load);
+        assertTrue(error.getMessage().contains("Некорректные данные элемента"), error.getMessage());
+    }
+
+    @Test
+    void corruptedChecksumIsDetected() throws IOException {
+        BinaryFileManager fileManager = saved(sampleCollection());
+        Path file = Path.of(fileManager.getFilePath());
+        flipByte(file, Files.size(file) - 1);
+        assertThrows(IOException.class, fileManager::load);
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        BinaryFileManager fileManager = saved(sampleCollection());
+        Path file = Path.of(fileManager.getFilePath());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertThrows(IOException.class, fileManager::load);
+    }
+
+    @Test
+    void wrongMagicIsRejected() throws IOException {
+        BinaryFileManager fileManager = saved(sampleCollection());
+        flipByte(Path.of(fileManager.getFilePath()), 0);
+        assertThrows(IOException.class, fileManager::load);
+    }
+
+    static void flipByte(Path file, long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(offset);
+            int value = raf.read();
+            raf.seek(offset);
+            raf.write(value ^ 0xFF);
+        }
+    }
+}
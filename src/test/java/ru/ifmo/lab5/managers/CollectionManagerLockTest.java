@@ -0,0 +1,104 @@
+package ru.ifmo.lab5.managers;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Coordinates;
+import ru.ifmo.lab5.model.Country;
+import ru.ifmo.lab5.model.Location;
+import ru.ifmo.lab5.model.Person;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionManagerLockTest {
+    private static Person person(String name) {
+        return new Person(0, name, new Coordinates(1.5, 2.5f), 10, Color.RED, null, Country.INDIA,
+                new Location(1f, 2.0, 3.0, "город " + name));
+    }
+
+    private static CollectionManager filled(int count) {
+        CollectionManager collectionManager = new CollectionManager();
+        for (int i = 1; i <= count; i++) {
+            collectionManager.add(person("p" + i));
+        }
+        return collectionManager;
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(thread.isAlive(), "писатель должен ждать блокировку");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void nestedReadInsideForEachDoesNotWaitForQueuedWriter() {
+        CollectionManager collectionManager = filled(3);
+        List<String> names = new ArrayList<>();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Thread writer = new Thread(() -> collectionManager.add(person("новый")));
+            collectionManager.forEach(p -> {
+                if (p.getId() == 1) {
+                    writer.start();
+                    try {
+                        awaitBlocked(writer);
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                // Писатель уже ждет блокировку записи, а поток держит блокировку чтения
+                names.add(collectionManager.findById(p.getId()).orElseThrow().getName());
+                assertEquals(1, collectionManager.page(p.getId() - 1, 1).size());
+            });
+            writer.join();
+        });
+
+        assertEquals(List.of("p1", "p2", "p3"), names);
+        assertEquals(4, collectionManager.size());
+    }
+
+    @Test
+    void modificationInsideForEachIsRejected() {
+        CollectionManager collectionManager = filled(2);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThrows(IllegalStateException.class,
+                        () -> collectionManager.forEach(p -> collectionManager.removeById(p.getId()))));
+
+        assertEquals(2, collectionManager.size());
+        // Блокировка чтения освобождена, изменения снова проходят
+        assertTrue(collectionManager.removeById(1));
+    }
+
+    @Test
+    void readersWaitingForWriterProceedAfterIt() throws InterruptedException {
+        CollectionManager collectionManager = filled(1);
+        List<Thread> readers = new ArrayList<>();
+        Thread writer = new Thread(() -> collectionManager.add(person("новый")));
+
+        collectionManager.forEach(p -> {
+            writer.start();
+            try {
+                awaitBlocked(writer);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            for (int i = 0; i < 4; i++) {
+                Thread reader = new Thread(() -> collectionManager.page(0, 10));
+                reader.start();
+                readers.add(reader);
+            }
+        });
+
+        writer.join(10_000);
+        for (Thread reader : readers) {
+            reader.join(10_000);
+            assertFalse(reader.isAlive(), "читатель должен дождаться писателя и завершиться");
+        }
+        assertEquals(2, collectionManager.size());
+    }
+}
@@ -0,0 +1,68 @@
+package ru.ifmo.lab5.managers;
+
+import org.junit.jupiter.api.Test;
+import ru.ifmo.lab5.commands.Command;
+import ru.ifmo.lab5.util.CommandResult;
+import ru.ifmo.lab5.util.CommandStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandManagerTest {
+    private final CommandManager commandManager = new CommandManager(new CollectionManager(), null, null);
+
+    private static Command failingWith(RuntimeException error) {
+        return new Command() {
+            @Override
+            public CommandResult execute(String arguments) {
+                throw error;
+            }
+
+            @Override
+            public String getDescription() {
+                return "failing";
+            }
+        };
+    }
+
+    @Test
+    void journalFailureIsReportedAsJournalError() {
+        CommandResult result = commandManager.execute(
+                failingWith(new JournalException("Журнал недоступен после ошибки записи", new IOException("диск полон"))), "");
+
+        assertEquals(CommandStatus.ERROR, result.getStatus());
+        assertTrue(result.getMessage().startsWith("Не удалось записать изменение в журнал"), result.getMessage());
+    }
+
+    @Test
+    void corruptDataIsNotReportedAsJournalError() {
+        CommandResult result = commandManager.execute(
+                failingWith(new UncheckedIOException(new IOException("Некорректные данные элемента"))), "");
+
+        assertEquals(CommandStatus.ERROR, result.getStatus());
+        assertTrue(result.getMessage().startsWith("Ошибка чтения данных коллекции"), result.getMessage());
+        assertFalse(result.getMessage().contains("журнал"), result.getMessage());
+    }
+
+    @Test
+    void successfulResultIsPassedThrough() {
+        Command command = new Command() {
+            @Override
+            public CommandResult execute(String arguments) {
+                return CommandResult.success(arguments);
+            }
+
+            @Override
+            public String getDescription() {
+                return "echo";
+            }
+        };
+
+        CommandResult result = commandManager.execute(command, "42");
+
+        assertEquals(CommandStatus.SUCCESS, result.getStatus());
+        assertEquals("42", result.getMessage());
+    }
+}
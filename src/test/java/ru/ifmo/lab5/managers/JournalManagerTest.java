@@ -0,0 +1,180 @@
+package ru.ifmo.lab5.managers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Coordinates;
+import ru.ifmo.lab5.model.Country;
+import ru.ifmo.lab5.model.Location;
+import ru.ifmo.lab5.model.Person;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalManagerTest {
+    @TempDir
+    Path directory;
+
+    private String collectionPath() {
+        return directory.resolve("collection.xml").toString();
+    }
+
+    private Path journalPath() {
+        return directory.resolve("collection.xml.journal");
+    }
+
+    private static Person person(String name, long height) {
+        return new Person(0, name, new Coordinates(1.5, 2.5f), height, Color.RED, null, Country.INDIA,
+                new Location(1f, 2.0, 3.0, "город " + name));
+    }
+
+    private CollectionManager journaled(JournalManager journal) throws IOException {
+        CollectionManager collectionManager = new CollectionManager();
+        journal.replay(collectionManager);
+        collectionManager.addChangeListener(journal);
+        return collectionManager;
+    }
+
+    private int replay(CollectionManager target) throws IOException {
+        try (JournalManager journal = new JournalManager(collectionPath())) {
+            return journal.replay(target);
+        }
+    }
+
+    @Test
+    void replayRestoresAllMutations() throws IOException {
+        CollectionManager original;
+        try (JournalManager journal = new JournalManager(collectionPath())) {
+            original = journaled(journal);
+            for (int i = 1; i <= 5; i++) {
+                original.add(person("p" + i, i * 10));
+            }
+            original.update(2, person("обновлен", 99));
+            original.removeById(3);
+            original.removeGreater(threshold(4));
+            original.add(person("p6", 60));
+        }
+
+        CollectionManager restored = new CollectionManager();
+        assertEquals(9, replay(restored));
+        assertEquals(original.snapshot().toString(), restored.snapshot().toString());
+        assertEquals("обновлен", restored.findById(2).orElseThrow().getName());
+    }
+
+    @Test
+    void replayDropsTruncatedLastRecord() throws IOException {
+        try (JournalManager journal = new JournalManager(collectionPath())) {
+            CollectionManager collectionManager = journaled(journal);
+            collectionManager.add(person("a", 1));
+            collectionManager.add(person("b", 2));
+        }
+        long fullLength = Files.size(journalPath());
+        try (RandomAccessFile file = new RandomAccessFile(journalPath().toFile(), "rw")) {
+            file.setLength(fullLength - 3);
+        }
+
+        CollectionManager restored = new CollectionManager();
+        assertEquals(1, replay(restored));
+        assertEquals(1, restored.size());
+        long validLength = Files.size(journalPath());
+        assertTrue(validLength < fullLength - 3, "оборванная запись должна быть отрезана");
+
+        // После обрезки журнал снова принимает записи
+        try (JournalManager journal = new JournalManager(collectionPath())) {
+            journaled(journal).add(person("c", 3));
+        }
+        CollectionManager again = new CollectionManager();
+        assertEquals(2, replay(again));
+        assertEquals("c", again.findById(2).orElseThrow().getName());
+    }
+
+    @Test
+    void replayStopsAtRecordWithBadChecksum() throws IOException {
+        try (JournalManager journal = new JournalManager(collectionPath())) {
+            CollectionManager collectionManager = journaled(journal);
+            collectionManager.add(person("a", 1));
+            collectionManager.add(person("b", 2));
+            collectionManager.add(person("c", 3));
+        }
+        long firstRecordEnd;
+        try (RandomAccessFile file = new RandomAccessFile(journalPath().toFile(), "rw")) {
+            firstRecordEnd = 2L * Integer.BYTES + file.readInt();
+            // Портится байт тела второй записи: длина цела, но CRC32 не сходится
+            long corrupted = firstRecordEnd + Integer.BYTES + 5;
+            file.seek(corrupted);
+            int value = file.read();
+            file.seek(corrupted);
+            file.write(value ^ 0xFF);
+        }
+
+        CollectionManager restored = new CollectionManager();
+        assertEquals(1, replay(restored));
+        assertEquals(1, restored.size());
+        assertEquals(firstRecordEnd, Files.size(journalPath()));
+    }
+
+    @Test
+    void checkpointKeepsRecordsAfterMark() throws IOException {
+        TreeSet<Person> snapshot;
+        try (JournalManager journal = new JournalManager(collectionPath())) {
+            CollectionManager collectionManager = journaled(journal);
+            collectionManager.add(person("a", 1));
+            collectionManager.add(person("b", 2));
+            long[] mark = new long[1];
+            snapshot = collectionManager.snapshot(() -> mark[0] = journal.mark());
+            collectionManager.add(person("c", 3));
+            journal.checkpoint(mark[0]);
+            collectionManager.removeById(1);
+        }
+
+        CollectionManager restored = new CollectionManager();
+        restored.setCollection(snapshot);
+        assertEquals(2, replay(restored));
+        assertEquals(2, restored.size());
+        assertFalse(restored.findById(1).isPresent());
+        assertEquals("c", restored.findById(3).orElseThrow().getName());
+    }
+
+    @Test
+    void noOpBulkRemovalsAreNotJournaled() throws IOException {
+        try (JournalManager journal = new JournalManager(collectionPath())) {
+            CollectionManager collectionManager = journaled(journal);
+            collectionManager.clear();
+            collectionManager.removeGreater(threshold(1));
+            collectionManager.removeLower(threshold(1));
+            assertEquals(0, Files.size(journalPath()));
+
+            collectionManager.add(person("a", 1));
+            collectionManager.add(person("b", 2));
+            long length = Files.size(journalPath());
+            assertEquals(0, collectionManager.removeGreater(threshold(2)));
+            assertEquals(0, collectionManager.removeLower(threshold(1)));
+            assertEquals(length, Files.size(journalPath()));
+
+            assertEquals(1, collectionManager.removeGreater(threshold(1)));
+            assertTrue(Files.size(journalPath()) > length);
+        }
+
+        CollectionManager restored = new CollectionManager();
+        assertEquals(3, replay(restored));
+        assertEquals(1, restored.size());
+    }
+
+    @Test
+    void emptyJournalReplaysNothing() throws IOException {
+        CollectionManager restored = new CollectionManager();
+        assertEquals(0, replay(restored));
+        assertTrue(restored.isEmpty());
+    }
+
+    private static Person threshold(long id) {
+        Person person = new Person();
+        person.setId(id);
+        return person;
+    }
+}
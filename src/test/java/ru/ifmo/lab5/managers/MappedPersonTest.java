@@ -0,0 +1,138 @@
+package ru.ifmo.lab5.managers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Person;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedPersonTest {
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private TreeSet<Person> persons;
+
+    @BeforeEach
+    void saveSample() throws IOException {
+        file = directory.resolve("collection.bin");
+        persons = BinaryFileManagerTest.sampleCollection();
+        new BinaryFileManager(file.toString()).save(persons);
+    }
+
+    private List<MappedPerson> mapAll() throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.open(file);
+        List<MappedPerson> mapped = new ArrayList<>();
+        for (long index = 0; index < snapshot.getRecordCount(); index++) {
+            mapped.add(new MappedPerson(snapshot, index, snapshot.getId(index)));
+        }
+        return mapped;
+    }
+
+    private static boolean isMaterialized(MappedPerson person) {
+        // Для еще не декодированного элемента unwrap возвращает отдельную копию
+        return MappedPerson.unwrap(person) == person;
+    }
+
+    @Test
+    void fixedWidthFieldsAreReadWithoutDecoding() throws IOException {
+        List<MappedPerson> mapped = mapAll();
+        int i = 0;
+        for (Person expected : persons) {
+            MappedPerson person = mapped.get(i++);
+            assertEquals(expected.getId(), person.getId());
+            assertEquals(expected.getHeight(), person.getHeight());
+            assertEquals(expected.getEyeColor(), person.getEyeColor());
+            assertEquals(expected.getHairColor(), person.getHairColor());
+            assertEquals(expected.getNationality(), person.getNationality());
+            assertFalse(isMaterialized(person));
+        }
+    }
+
+    @Test
+    void variableFieldsDecodeOnFirstAccess() throws IOException {
+        List<MappedPerson> mapped = mapAll();
+        int i = 0;
+        for (Person expected : persons) {
+            MappedPerson person = mapped.get(i++);
+            assertEquals(expected.getName(), person.getName());
+            assertTrue(isMaterialized(person));
+            assertEquals(expected.getCoordinates().toString(), person.getCoordinates().toString());
+            assertEquals(expected.getCreationDate(), person.getCreationDate());
+            assertEquals(expected.getLocation().toString(), person.getLocation().toString());
+            assertEquals(expected.toString(), person.toString());
+        }
+    }
+
+    @Test
+    void unwrapOfUndecodedElementIsEqualCopy() throws IOException {
+        MappedPerson person = mapAll().get(0);
+        Person copy = MappedPerson.unwrap(person);
+        assertNotSame(person, copy);
+        assertEquals(persons.first().toString(), copy.toString());
+        assertFalse(isMaterialized(person));
+    }
+
+    @Test
+    void setterDecodesBeforeChangingField() throws IOException {
+        MappedPerson person = mapAll().get(0);
+        person.setHairColor(Color.BLUE);
+        assertTrue(isMaterialized(person));
+        assertEquals(Color.BLUE, person.getHairColor());
+        assertEquals(persons.first().getName(), person.getName());
+        assertEquals(persons.first().getHeight(), person.getHeight());
+        assertEquals(persons.first().getLocation().toString(), person.getLocation().toString());
+    }
+
+    @Test
+    void equalityFollowsIdLikePerson() throws IOException {
+        List<MappedPerson> mapped = mapAll();
+        int i = 0;
+        for (Person expected : persons) {
+            MappedPerson person = mapped.get(i++);
+            assertEquals(expected, person);
+            assertEquals(person, expected);
+            assertEquals(expected.hashCode(), person.hashCode());
+            assertEquals(0, person.compareTo(expected));
+            assertTrue(persons.contains(person));
+            assertFalse(isMaterialized(person), "сравнение не должно декодировать запись");
+        }
+        assertNotEquals(mapped.get(0), mapped.get(1));
+        assertTrue(mapped.get(0).compareTo(mapped.get(1)) < 0);
+    }
+
+    @Test
+    void unknownColorOrdinalFailsAsCorruptData() throws IOException {
+        // Первая запись лежит сразу перед второй и третьей, то есть за 3 записи до столбца ID
+        long offset = Files.size(file) - Integer.BYTES - 3L * Long.BYTES
+                - 3L * BinaryFileManager.RECORD_SIZE + BinaryFileManager.OFFSET_EYE_COLOR;
+        BinaryFileManagerTest.writeByte(file, offset, 42);
+        MappedPerson person = mapAll().get(0);
+
+        UncheckedIOException error = assertThrows(UncheckedIOException.class, person::getEyeColor);
+        assertTrue(error.getMessage().contains("Некорректные данные элемента"), error.getMessage());
+        assertThrows(UncheckedIOException.class, person::getName);
+    }
+
+    @Test
+    void loadMappedFillsManagerLazily() throws IOException {
+        CollectionManager collectionManager = new CollectionManager();
+        new BinaryFileManager(file.toString()).loadMapped(collectionManager);
+        assertEquals(persons.size(), collectionManager.size());
+        assertEquals(persons.toString(), collectionManager.snapshot().toString());
+        long blue = persons.stream().filter(p -> p.getHairColor() == Color.BLUE).count();
+        assertEquals(blue, collectionManager.countByHairColor(Color.BLUE));
+        assertEquals(persons.stream().mapToLong(Person::getHeight).max().orElseThrow(),
+                collectionManager.getMaxHeight().orElseThrow());
+    }
+}
@@ -0,0 +1,210 @@
+package ru.ifmo.lab5.managers;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import ru.ifmo.lab5.model.Color;
+import ru.ifmo.lab5.model.Coordinates;
+import ru.ifmo.lab5.model.Location;
+import ru.ifmo.lab5.model.Person;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Одни и те же граничные случаи для всех реализаций {@link PersonStore}.
+ */
+class PersonStoreTest {
+
+    static Stream<Supplier<PersonStore>> stores() {
+        return Stream.of(TreeSetPersonStore::new, SkipListPersonStore::new, ColumnarPersonStore::new, OffHeapPersonStore::new);
+    }
+
+    private static Person person(long id) {
+        return person(id, "p" + id);
+    }
+
+    private static Person person(long id, String name) {
+        Person person = new Person(id, name, new Coordinates((double) -id, 1f), id,
+                id % 2 == 0 ? Color.RED : null, Color.values()[(int) (id % Color.values().length)], null,
+                new Location(1f, 2.0, 3.0, id % 3 == 0 ? null : "город " + name));
+        person.setCreationDate(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(id));
+        return person;
+    }
+
+    private static PersonStore filled(Supplier<PersonStore> factory, long... ids) {
+        PersonStore store = factory.get();
+        for (long id : ids) {
+            assertTrue(store.add(person(id)), "ID " + id);
+        }
+        return store;
+    }
+
+    private static List<Long> ids(PersonStore store) {
+        return ids(store.iteratorFrom(0));
+    }
+
+    private static List<Long> ids(Iterator<Person> iterator) {
+        List<Long> ids = new ArrayList<>();
+        iterator.forEachRemaining(person -> ids.add(person.getId()));
+        return ids;
+    }
+
+    private static List<Long> ids(List<Person> persons) {
+        return persons.stream().map(Person::getId).collect(Collectors.toList());
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void idsInsertedInTheMiddleKeepOrder(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 10, 20, 30, 15, 5, 25);
+        assertEquals(List.of(5L, 10L, 15L, 20L, 25L, 30L), ids(store));
+        assertEquals(6, store.size());
+        assertEquals(5, store.first().getId());
+        assertEquals(30, store.last().getId());
+        assertEquals("p15", store.get(15).getName());
+        assertEquals(List.of(20L, 25L, 30L), ids(store.iteratorFrom(16)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void duplicateIdIsRejectedUntilRemoved(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 1, 2, 3);
+        assertFalse(store.add(person(2, "другой")));
+        assertEquals("p2", store.get(2).getName());
+        assertEquals(2, store.remove(2).getId());
+        assertNull(store.remove(2));
+        assertNull(store.get(2));
+        assertTrue(store.add(person(2, "снова")));
+        assertEquals("снова", store.get(2).getName());
+        assertEquals(List.of(1L, 2L, 3L), ids(store));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void replaceReturnsPreviousAndSkipsMissing(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 1, 2, 3);
+        assertEquals("p2", store.replace(person(2, "новый")).getName());
+        assertEquals("новый", store.get(2).getName());
+        assertNull(store.replace(person(4)));
+        store.remove(3);
+        assertNull(store.replace(person(3)));
+        assertNull(store.get(3));
+        assertEquals(List.of(1L, 2L), ids(store));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void rangeRemovalSkipsDeletedSlots(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        store.remove(2);
+        store.remove(4);
+        store.remove(9);
+        assertEquals(List.of(1L, 3L), ids(store.removeLower(4)));
+        assertEquals(List.of(8L, 10L), ids(store.removeGreater(7)));
+        assertEquals(List.of(5L, 6L, 7L), ids(store));
+        assertEquals(3, store.size());
+        assertEquals(5, store.first().getId());
+        assertEquals(7, store.last().getId());
+
+        // Удаленные и вырезанные диапазоном ID снова свободны
+        assertTrue(store.add(person(4)));
+        assertTrue(store.add(person(9)));
+        assertEquals(List.of(4L, 5L, 6L, 7L, 9L), ids(store));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void rangeRemovalAtBounds(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 1, 2, 3);
+        assertTrue(store.removeLower(1).isEmpty());
+        assertTrue(store.removeGreater(3).isEmpty());
+        assertTrue(store.removeGreater(Long.MAX_VALUE).isEmpty());
+        assertEquals(List.of(1L, 2L, 3L), ids(store.removeLower(Long.MAX_VALUE)));
+        assertEquals(0, store.size());
+        assertNull(store.first());
+        assertNull(store.last());
+        assertTrue(store.add(person(2)));
+        assertEquals(List.of(2L), ids(store));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void removingOnlyDeletedSlotsRemovesNothing(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 1, 2, 3, 4);
+        store.remove(3);
+        store.remove(4);
+        assertTrue(store.removeGreater(2).isEmpty());
+        store.remove(1);
+        assertTrue(store.removeLower(2).isEmpty());
+        assertEquals(List.of(2L), ids(store));
+        assertEquals(1, store.size());
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void compactionKeepsLiveElements(Supplier<PersonStore> factory) {
+        PersonStore store = factory.get();
+        for (long id = 1; id <= 3000; id++) {
+            store.add(person(id));
+        }
+        // Удаляется больше половины элементов - хранилища с пометками уплотняются
+        for (long id = 1; id <= 3000; id++) {
+            if (id % 3 != 0) {
+                assertNotNull(store.remove(id));
+            }
+        }
+        List<Long> expected = LongStream.rangeClosed(1, 3000).filter(id -> id % 3 == 0).boxed().collect(Collectors.toList());
+        assertEquals(expected, ids(store));
+        assertEquals(1000, store.size());
+        assertEquals("p1500", store.get(1500).getName());
+        assertNull(store.get(1501));
+
+        assertTrue(store.add(person(1501, "после уплотнения")));
+        assertEquals("после уплотнения", store.get(1501).getName());
+        assertEquals(List.of(1500L, 1501L, 1503L), ids(store.iteratorFrom(1499)).subList(0, 3));
+        assertEquals(List.of(3L, 6L), ids(store.removeLower(9)));
+        assertEquals(List.of(3000L), ids(store.removeGreater(2997)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void iteratorFromDeletedIdStartsAtNextLive(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 1, 2, 3, 4, 5);
+        store.remove(3);
+        assertEquals(List.of(4L, 5L), ids(store.iteratorFrom(3)));
+        assertTrue(ids(store.iteratorFrom(6)).isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void snapshotAndColumnsMatchContents(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 3, 1, 2, 5);
+        store.remove(2);
+        TreeSet<Person> snapshot = store.snapshot();
+        assertEquals(List.of(1L, 3L, 5L), ids(new ArrayList<>(snapshot)));
+        assertEquals(person(3).toString(), snapshot.ceiling(person(3)).toString());
+        assertArrayEquals(new long[] {1, 3, 5}, store.longColumn(NumericField.HEIGHT));
+    }
+
+    @ParameterizedTest
+    @MethodSource("stores")
+    void clearThenReuse(Supplier<PersonStore> factory) {
+        PersonStore store = filled(factory, 1, 2, 3);
+        store.clear();
+        assertEquals(0, store.size());
+        assertTrue(ids(store).isEmpty());
+        TreeSet<Person> replacement = new TreeSet<>(List.of(person(7), person(8)));
+        store.replaceAll(replacement);
+        assertEquals(List.of(7L, 8L), ids(store));
+        assertEquals(person(8).toString(), store.get(8).toString());
+    }
+}
@@ -0,0 +1,131 @@
+package ru.ifmo.lab5.managers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ifmo.lab5.commands.Command;
+import ru.ifmo.lab5.util.CommandResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptRunnerTest {
+    @TempDir
+    Path directory;
+
+    private CommandManager commandManager;
+    private ScriptRunner scriptRunner;
+    private Path script;
+    private final List<String> executed = new ArrayList<>();
+
+    /** Команда, записывающая свое имя и аргументы в {@link #executed}. */
+    private Command recording(String name) {
+        return new Command() {
+            @Override
+            public CommandResult execute(String arguments) {
+                executed.add(name + " " + arguments);
+                return CommandResult.success();
+            }
+
+            @Override
+            public String getDescription() {
+                return name;
+            }
+        };
+    }
+
+    @BeforeEach
+    void setUp() {
+        commandManager = new CommandManager(new CollectionManager(), null, null);
+        commandManager.register("echo", recording("echo"));
+        scriptRunner = new ScriptRunner(commandManager, new UserInputHandler());
+        script = directory.resolve("script.txt");
+    }
+
+    private List<String> run() {
+        executed.clear();
+        scriptRunner.executeScript(script.toString());
+        return new ArrayList<>(executed);
+    }
+
+    /** Переписывает скрипт, оставляя прежнее время изменения файла. */
+    private void rewriteKeepingTime(String content) throws IOException {
+        FileTime lastModified = Files.getLastModifiedTime(script);
+        Files.writeString(script, content, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(script, lastModified);
+    }
+
+    @Test
+    void commentsAndBlankLinesAreSkipped() throws IOException {
+        Files.writeString(script, "# комментарий\n\necho a\n  echo   b c  \n", StandardCharsets.UTF_8);
+
+        assertEquals(List.of("echo a", "echo b c"), run());
+    }
+
+    @Test
+    void unchangedScriptIsRunAgain() throws IOException {
+        Files.writeString(script, "echo a\necho b\n", StandardCharsets.UTF_8);
+
+        assertEquals(List.of("echo a", "echo b"), run());
+        assertEquals(List.of("echo a", "echo b"), run());
+    }
+
+    @Test
+    void commandIsResolvedWhenTheLineRuns() throws IOException {
+        Files.writeString(script, "echo a\n", StandardCharsets.UTF_8);
+        assertEquals(List.of("echo a"), run());
+
+        // Разобранный скрипт берется из кэша, но выполняется команда, зарегистрированная сейчас
+        commandManager.register("echo", recording("replaced"));
+        assertEquals(List.of("replaced a"), run());
+    }
+
+    @Test
+    void sizeChangeInvalidatesCache() throws IOException {
+        Files.writeString(script, "echo a\n", StandardCharsets.UTF_8);
+        assertEquals(List.of("echo a"), run());
+
+        rewriteKeepingTime("echo a\necho b\n");
+
+        assertEquals(List.of("echo a", "echo b"), run());
+    }
+
+    @Test
+    void modificationTimeChangeInvalidatesCache() throws IOException {
+        Files.writeString(script, "echo a\n", StandardCharsets.UTF_8);
+        assertEquals(List.of("echo a"), run());
+
+        FileTime lastModified = Files.getLastModifiedTime(script);
+        Files.writeString(script, "echo b\n", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(script, FileTime.fromMillis(lastModified.toMillis() + 2000));
+
+        assertEquals(List.of("echo b"), run());
+    }
+
+    @Test
+    void sameSizeEditWithSameTimeIsNotNoticed() throws IOException {
+        Files.writeString(script, "echo a\n", StandardCharsets.UTF_8);
+        assertEquals(List.of("echo a"), run());
+
+        // Известное ограничение: правка без изменения размера и времени изменения не видна кэшу
+        rewriteKeepingTime("echo b\n");
+        assertEquals(List.of("echo a"), run());
+
+        scriptRunner.clearCache();
+        assertEquals(List.of("echo b"), run());
+    }
+
+    @Test
+    void unknownCommandDoesNotStopScript() throws IOException {
+        Files.writeString(script, "nope x\necho a\n", StandardCharsets.UTF_8);
+
+        assertEquals(List.of("echo a"), run());
+    }
+}
@@ -0,0 +1,86 @@
+package ru.ifmo.lab5.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandLineTest {
+
+    @Test
+    void nameWithoutArguments() {
+        CommandLine commandLine = CommandLine.parse("show");
+        assertEquals("show", commandLine.getName());
+        assertNull(commandLine.getArguments());
+    }
+
+    @Test
+    void argumentsKeepInnerWhitespace() {
+        CommandLine commandLine = CommandLine.parse("execute_script   my  script.txt");
+        assertEquals("execute_script", commandLine.getName());
+        assertEquals("my  script.txt", commandLine.getArguments());
+    }
+
+    @Test
+    void nameIsLowercasedIndependentlyOfLocale() {
+        Locale previous = Locale.getDefault();
+        // В турецкой локали "I".toLowerCase() дает "ı" без точки
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals("info", CommandLine.parse("INFO").getName());
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void argumentsKeepTheirCase() {
+        assertEquals("RED", CommandLine.parse("COUNT_BY_HAIR_COLOR RED").getArguments());
+    }
+
+    @Test
+    void everyWhitespaceCharacterSeparates() {
+        CommandLine commandLine = CommandLine.parse("\t\fupdate\u000B\r\n 5 ");
+        assertEquals("update", commandLine.getName());
+        assertEquals("5 ", commandLine.getArguments());
+    }
+
+    @Test
+    void trailingWhitespaceMeansNoArguments() {
+        assertNull(CommandLine.parse("help \t ").getArguments());
+    }
+
+    @Test
+    void blankLineIsNotACommand() {
+        assertNull(CommandLine.parse(""));
+        assertNull(CommandLine.parse(" \t\r\n"));
+    }
+
+    @Test
+    void nonBreakingSpaceIsPartOfWord() {
+        // \s в регулярных выражениях не совпадает с неразрывным пробелом, поэтому и разбор его не делит
+        CommandLine commandLine = CommandLine.parse("add\u00A0x y");
+        assertEquals("add\u00A0x", commandLine.getName());
+        assertEquals("y", commandLine.getArguments());
+    }
+
+    @Test
+    void tokenizeSplitsOnWhitespaceRuns() {
+        assertArrayEquals(new String[] {"--from-id", "5", "10"}, CommandLine.tokenize(" --from-id\t5 \n 10 "));
+        assertArrayEquals(new String[] {"x"}, CommandLine.tokenize("x"));
+    }
+
+    @Test
+    void tokenizeOfMissingArguments() {
+        assertArrayEquals(new String[0], CommandLine.tokenize(null));
+        assertArrayEquals(new String[0], CommandLine.tokenize(""));
+        assertArrayEquals(new String[0], CommandLine.tokenize(" \t "));
+    }
+
+    @Test
+    void tokenizeMatchesRegexSplit() {
+        String arguments = "  a\tb\u000Bc\fd\re\nf  ";
+        assertArrayEquals(arguments.trim().split("\\s+"), CommandLine.tokenize(arguments));
+    }
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.lab5.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedListViewTest {
+    /** Четные числа от 0 до 18: между элементами есть значения, которых нет в представлении. */
+    private static SortedListView<Integer> evens() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 20; i += 2) {
+            list.add(i);
+        }
+        return new SortedListView<>(list);
+    }
+
+    @Test
+    void subSetIncludesLowerAndExcludesUpperBound() {
+        SortedListView<Integer> view = evens();
+
+        assertEquals(List.of(4, 6, 8), new ArrayList<>(view.subSet(4, 10)));
+        assertEquals(List.of(4, 6, 8), new ArrayList<>(view.subSet(3, 9)));
+        assertEquals(List.of(0, 2), new ArrayList<>(view.headSet(4)));
+        assertEquals(List.of(16, 18), new ArrayList<>(view.tailSet(15)));
+        assertEquals(3, view.subSet(4, 10).size());
+    }
+
+    @Test
+    void nestedViewsKeepTheirRange() {
+        SortedSet<Integer> middle = evens().subSet(4, 14);
+
+        assertEquals(List.of(6, 8), new ArrayList<>(middle.subSet(5, 10)));
+        assertEquals(List.of(4, 6), new ArrayList<>(middle.headSet(8)));
+        assertEquals(List.of(10, 12), new ArrayList<>(middle.tailSet(10)));
+        assertEquals(4, middle.first());
+        assertEquals(12, middle.last());
+        assertTrue(middle.contains(12));
+        assertFalse(middle.contains(14));
+        assertFalse(middle.contains(7));
+    }
+
+    @Test
+    void fromElementGreaterThanToElementIsRejected() {
+        SortedListView<Integer> view = evens();
+
+        assertThrows(IllegalArgumentException.class, () -> view.subSet(10, 4));
+    }
+
+    @Test
+    void boundsOutsideViewRangeAreRejected() {
+        SortedSet<Integer> middle = evens().subSet(4, 14);
+
+        assertThrows(IllegalArgumentException.class, () -> middle.subSet(2, 10));
+        assertThrows(IllegalArgumentException.class, () -> middle.subSet(6, 15));
+        assertThrows(IllegalArgumentException.class, () -> middle.headSet(15));
+        assertThrows(IllegalArgumentException.class, () -> middle.tailSet(3));
+        // Верхняя граница диапазона сама допустима как граница поддиапазона
+        assertTrue(middle.tailSet(14).isEmpty());
+        assertEquals(List.of(4, 6), new ArrayList<>(middle.headSet(8).headSet(8)));
+    }
+
+    @Test
+    void emptyViewsHaveNoFirstOrLast() {
+        SortedListView<Integer> empty = new SortedListView<>(List.of());
+        SortedSet<Integer> emptyRange = evens().subSet(5, 6);
+
+        for (SortedSet<Integer> view : List.<SortedSet<Integer>>of(empty, emptyRange, evens().headSet(0))) {
+            assertTrue(view.isEmpty());
+            assertEquals(0, view.size());
+            assertFalse(view.iterator().hasNext());
+            assertThrows(NoSuchElementException.class, view::first);
+            assertThrows(NoSuchElementException.class, view::last);
+        }
+    }
+
+    @Test
+    void viewIsReadOnly() {
+        SortedListView<Integer> view = evens();
+
+        assertThrows(UnsupportedOperationException.class, () -> view.add(1));
+        assertThrows(UnsupportedOperationException.class, () -> {
+            var iterator = view.iterator();
+            iterator.next();
+            iterator.remove();
+        });
+    }
+
+    @Test
+    void treeSetAddAllKeepsOrder() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(i * 3);
+        }
+
+        TreeSet<Integer> tree = new TreeSet<>();
+        tree.addAll(new SortedListView<>(list));
+        assertEquals(list, new ArrayList<>(tree));
+        assertEquals(0, tree.first());
+        assertEquals(2997, tree.last());
+        assertTrue(tree.contains(1500));
+        assertFalse(tree.contains(1501));
+
+        TreeSet<Integer> fromRange = new TreeSet<>();
+        fromRange.addAll(new SortedListView<>(list).subSet(30, 60));
+        assertEquals(List.of(30, 33, 36, 39, 42, 45, 48, 51, 54, 57), new ArrayList<>(fromRange));
+    }
+}